@@ -0,0 +1,35 @@
+package Benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This is an independent class in the application.
+ * It runs the benchmarks of the 'Benchmarks' package with the GC profiler, which reports the allocation per
+ * operation ('gc.alloc.rate.norm') next to the operations per second.
+ * The usual JMH command line options can be given, e.g. 'ConversionBenchmark -f 2' to run one class with two forks.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks.
+     * @param args JMH command line options.
+     * @throws CommandLineOptionException Thrown if the options are invalid.
+     * @throws RunnerException Thrown if a benchmark fails.
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLineOptions);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            builder.include("Benchmarks\\.");
+        }
+        Options options = builder.addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
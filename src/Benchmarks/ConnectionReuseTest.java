@@ -0,0 +1,86 @@
+package Benchmarks;
+
+import Code.Connection;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This is an independent class in the application.
+ * It checks that Connection reuses its TCP connections: a number of sequential requests are sent to a local stub
+ * server, which records the remote port of every request it accepts. Every new TCP connection has a new port, so a
+ * single port means that a single connection served all requests. The HTTP response cache is disabled for the test.
+ * The APIKey.json resource must be on the class path.
+ * Usage:
+ * <pre>
+ *     ConnectionReuseTest [--requests=100]
+ * </pre>
+ */
+public class ConnectionReuseTest {
+
+    private static final byte[] BODY = "{\"USD_EUR\":0.92}".getBytes(StandardCharsets.UTF_8);
+    private static final Set<Integer> REMOTE_PORTS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Answers a request to the stub server and records the port it came from.
+     * @param exchange The request and its response.
+     * @throws IOException Handles the HttpExchange methods.
+     */
+    private static void handle(HttpExchange exchange) throws IOException {
+        REMOTE_PORTS.add(exchange.getRemoteAddress().getPort());
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(200, BODY.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(BODY);
+        }
+    }
+
+    /**
+     * Sends the requests and prints the number of TCP connections they used.
+     * @param args The options.
+     * @throws IOException Handles the HttpServer and Connection methods.
+     */
+    public static void main(String[] args) throws IOException {
+        int requests = 100;
+        for (String arg : args) {
+            if (arg.startsWith("--requests=")) {
+                requests = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v7/convert", ConnectionReuseTest::handle);
+        server.start();
+        try {
+            Connection.setCache(null);
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v7/convert?q=USD_EUR&apiKey=";
+            int failures = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                try (Connection connection = new Connection(url)) {
+                    InputStream content = connection.getContent();
+                    if (connection.getResponseCode() != 200 || content == null || content.readAllBytes().length != BODY.length) {
+                        failures++;
+                    }
+                }
+            }
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%d requests, %d failed, %d TCP connections, %.2f ms per request%n", requests, failures,
+                    REMOTE_PORTS.size(), millis / requests);
+            System.out.println(REMOTE_PORTS.size() == 1 && failures == 0
+                    ? "OK: a single connection was reused" : "FAILED: the connection was not reused");
+        } finally {
+            server.stop(0);
+        }
+    }
+}
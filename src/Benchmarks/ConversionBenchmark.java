@@ -0,0 +1,131 @@
+package Benchmarks;
+
+import Code.ConversionEngine;
+import Code.Currencies;
+import Code.CurrencyRegistry;
+import Code.RateMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Currency;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a single conversion, including the rounding of the result and the rate lookup.
+ * The rates are served by a stubbed rate matrix, so the benchmarks run offline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConversionBenchmark {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private Currencies currencies;
+    private ConversionEngine engine;
+    private Currency fromCurrency;
+    private Currency toCurrency;
+    private BigInteger wholeAmount;
+    private BigInteger largeAmount;
+    private BigDecimal decimalAmount;
+    private double conversionRate;
+
+    /**
+     * Installs a stubbed rate matrix with a made up rate for every supported currency.
+     * @throws IOException Handles the Currencies constructor.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        currencies = new Currencies();
+        engine = new ConversionEngine(currencies);
+        CurrencyRegistry registry = currencies.getRegistry();
+        double[] pivotRates = new double[registry.size()];
+        for (int i = 0; i < pivotRates.length; i++) {
+            pivotRates[i] = 0.25 + i * 0.731;
+        }
+        int pivotOrdinal = registry.getOrdinal("USD");
+        pivotRates[pivotOrdinal] = 1;
+        Currencies.setRateMatrix(new RateMatrix(pivotOrdinal, pivotRates, System.currentTimeMillis()));
+        fromCurrency = Currency.getInstance("USD");
+        toCurrency = Currency.getInstance("EUR");
+        conversionRate = currencies.getRate(fromCurrency, toCurrency);
+        wholeAmount = BigInteger.valueOf(12345);
+        largeAmount = new BigInteger("123456789012345678901234567890");
+        decimalAmount = new BigDecimal("12345.67");
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Obtains the shared registry, as every screen of the application does.
+     * @return Returns the currencies.
+     * @throws IOException Handles the Currencies constructor.
+     */
+    @Benchmark
+    public Currencies createCurrencies() throws IOException {
+        return new Currencies();
+    }
+
+    /**
+     * Converts and rounds a whole amount that fits in a long.
+     * @return Returns the converted amount.
+     */
+    @Benchmark
+    public BigDecimal convertWholeAmount() {
+        return currencies.convert(wholeAmount, conversionRate);
+    }
+
+    /**
+     * Converts and rounds a whole amount that does not fit in a long, i.e. with BigDecimal arithmetic.
+     * @return Returns the converted amount.
+     */
+    @Benchmark
+    public BigDecimal convertLargeAmount() {
+        return currencies.convert(largeAmount, conversionRate);
+    }
+
+    /**
+     * Converts and rounds an amount with decimal places.
+     * @return Returns the converted amount.
+     */
+    @Benchmark
+    public BigDecimal convertDecimalAmount() {
+        return currencies.convert(decimalAmount, conversionRate);
+    }
+
+    /**
+     * Looks up a rate in the stubbed rate matrix.
+     * @return Returns the conversion rate.
+     * @throws IOException Handles getRate().
+     */
+    @Benchmark
+    public double getRate() throws IOException {
+        return currencies.getRate(fromCurrency, toCurrency);
+    }
+
+    /**
+     * Looks up the rate of two currency codes and converts a whole amount.
+     * @return Returns the converted amount.
+     * @throws IOException Handles convert().
+     */
+    @Benchmark
+    public BigDecimal engineConvert() throws IOException {
+        return engine.convert("USD", "EUR", wholeAmount);
+    }
+}
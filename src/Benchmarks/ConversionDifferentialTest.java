@@ -0,0 +1,212 @@
+package Benchmarks;
+
+import Code.Currencies;
+import Code.FixedPointConverter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This is an independent class in the application.
+ * It checks that Currencies.convert(BigInteger, double) returns exactly what the original BigDecimal conversion with
+ * the string and regular expression round() returned, digit for digit and scale for scale. Both the FixedPointConverter
+ * path and the BigDecimal fallback are covered: random amounts and rates of every magnitude, and edge cases such as
+ * zero, amounts around 2^63, rates with more than 63 fractional bits, subnormal rates and results small enough to be
+ * printed in scientific notation.
+ * Usage:
+ * <pre>
+ *     ConversionDifferentialTest [--samples=1000000] [--seed=1]
+ * </pre>
+ */
+public class ConversionDifferentialTest {
+
+    private static final Pattern ROUNDING_PATTERN = Pattern.compile("(.*\\.0*...).*");
+
+    /**
+     * The original Currencies.round(), before the conversion was optimized.
+     * @param number Number to be rounded to two decimal places.
+     * @return Returns a rounded number to two decimal places.
+     */
+    private static BigDecimal baselineRound(BigDecimal number) {
+        String numberString = number.toString();
+        Matcher match = ROUNDING_PATTERN.matcher(numberString);
+        if (match.matches()) {
+            BigDecimal finalAmount = new BigDecimal(match.group(1));
+            int n = finalAmount.scale();
+            if(n > 2) {
+                finalAmount = finalAmount.stripTrailingZeros();
+            }
+            if(n > 2) {
+                finalAmount = finalAmount.setScale(n - 1, RoundingMode.HALF_UP);
+            }
+            return finalAmount;
+        }
+        return number;
+    }
+
+    /**
+     * The original Currencies.convert(BigInteger, double), before the conversion was optimized.
+     * @param amount The amount to be converted to the target currency.
+     * @param conversionRate The conversion rate from the base to target currency.
+     * @return Returns the converted amount.
+     */
+    private static BigDecimal baselineConvert(BigInteger amount, double conversionRate) {
+        BigDecimal newAmount = new BigDecimal(amount);
+        BigDecimal finalAmount = newAmount.multiply(new BigDecimal(conversionRate));
+        if(finalAmount.compareTo(BigDecimal.valueOf(0)) == 0) {
+            return BigDecimal.valueOf(0);
+        }
+        finalAmount = baselineRound(finalAmount);
+        return finalAmount;
+    }
+
+    /**
+     * Returns the edge case amounts: zero, small amounts, powers of ten and amounts around 2^63.
+     * @return Returns the amounts.
+     */
+    private static List<BigInteger> edgeAmounts() {
+        List<BigInteger> amounts = new ArrayList<>();
+        for (long amount = 0; amount <= 20; amount++) {
+            amounts.add(BigInteger.valueOf(amount));
+        }
+        for (BigInteger power = BigInteger.TEN; power.bitLength() < 80; power = power.multiply(BigInteger.TEN)) {
+            amounts.add(power.subtract(BigInteger.ONE));
+            amounts.add(power);
+        }
+        BigInteger twoTo63 = BigInteger.ONE.shiftLeft(63);
+        for (int delta = -3; delta <= 3; delta++) {
+            amounts.add(twoTo63.add(BigInteger.valueOf(delta)));
+        }
+        for (int bits = 52; bits < 63; bits++) {
+            amounts.add(BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE));
+        }
+        return amounts;
+    }
+
+    /**
+     * Returns the edge case rates: zero, exact binary fractions, half-up ties, rates with many fractional bits,
+     * subnormal rates and very large rates.
+     * @return Returns the rates.
+     */
+    private static List<Double> edgeRates() {
+        List<Double> rates = new ArrayList<>();
+        double[] values = {0, 1, 0.5, 0.25, 0.125, 0.0625, 0.005, 0.0005, 0.0015, 0.995, 1.005, 0.1, 0.2, 0.3,
+                0.92, 1.0825, 109.87, 1e-3, 1e-6, 1e-7, 1e-9, 1e-12, 1e-18, 1e-20, Math.ulp(1.0), Math.ulp(0.5),
+                Double.MIN_NORMAL, Double.MIN_VALUE, 1e6, 1e9, 1e15, Math.pow(2, 52), Math.pow(2, 60), 1e20};
+        for (double value : values) {
+            rates.add(value);
+            rates.add(Math.nextUp(value));
+            if (value > 0) {
+                rates.add(Math.nextDown(value));
+            }
+        }
+        for (int exponent = -70; exponent <= 10; exponent++) {
+            rates.add(Math.scalb(1.0, exponent));
+            rates.add(Math.scalb(1.5, exponent));
+        }
+        return rates;
+    }
+
+    /**
+     * Returns a random amount, with a random number of bits so that every magnitude is covered.
+     * @param random The random generator.
+     * @return Returns the amount.
+     */
+    private static BigInteger randomAmount(SplittableRandom random) {
+        int bits = random.nextInt(1, 72);
+        BigInteger amount = BigInteger.valueOf(random.nextLong() >>> 1).shiftRight(Math.max(0, 63 - bits));
+        return bits > 63 ? amount.shiftLeft(bits - 63).add(BigInteger.valueOf(random.nextInt(1 << 8))) : amount;
+    }
+
+    /**
+     * Returns a random rate: a quoted rate with up to six significant digits, or a double of random magnitude.
+     * @param random The random generator.
+     * @return Returns the rate.
+     */
+    private static double randomRate(SplittableRandom random) {
+        if (random.nextBoolean()) {
+            return random.nextInt(1, 1000000) * Math.pow(10, random.nextInt(-12, 4));
+        }
+        return random.nextDouble() * Math.pow(2, random.nextInt(-60, 40));
+    }
+
+    /**
+     * Compares one conversion with the baseline and prints it if the results differ.
+     * @param currencies The currencies.
+     * @param amount The amount.
+     * @param rate The conversion rate.
+     * @return Returns true if the results differ.
+     */
+    private static boolean differs(Currencies currencies, BigInteger amount, double rate) {
+        String expected = baselineConvert(amount, rate).toString();
+        String actual = currencies.convert(amount, rate).toString();
+        if (!expected.equals(actual)) {
+            System.out.printf("MISMATCH amount=%s rate=%s (%s): expected %s, got %s%n", amount, rate,
+                    new BigDecimal(rate).toPlainString(), expected, actual);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs the edge cases and the random samples, and prints the number of mismatches and of fast path conversions.
+     * @param args The options.
+     * @throws IOException Handles the Currencies constructor.
+     */
+    public static void main(String[] args) throws IOException {
+        int samples = 1000000;
+        long seed = 1;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--samples=")) {
+                samples = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--seed=")) {
+                seed = Long.parseLong(value);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        Currencies currencies = new Currencies();
+        FixedPointConverter.ScaledAmount result = new FixedPointConverter.ScaledAmount();
+        long conversions = 0;
+        long fastPath = 0;
+        long mismatches = 0;
+        for (BigInteger amount : edgeAmounts()) {
+            for (double rate : edgeRates()) {
+                conversions++;
+                if (amount.bitLength() < Long.SIZE && FixedPointConverter.convert(amount.longValue(), rate, result)) {
+                    fastPath++;
+                }
+                if (differs(currencies, amount, rate)) {
+                    mismatches++;
+                }
+            }
+        }
+        long edgeCases = conversions;
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < samples; i++) {
+            BigInteger amount = randomAmount(random);
+            double rate = randomRate(random);
+            conversions++;
+            if (amount.bitLength() < Long.SIZE && FixedPointConverter.convert(amount.longValue(), rate, result)) {
+                fastPath++;
+            }
+            if (differs(currencies, amount, rate)) {
+                mismatches++;
+            }
+        }
+        System.out.printf("%d conversions (%d edge cases, %d random), %d on the fixed-point path, %d on the BigDecimal "
+                + "fallback, %d mismatches%n", conversions, edgeCases, samples, fastPath, conversions - fastPath, mismatches);
+        System.out.println(mismatches == 0 ? "OK: the conversions match the original round()"
+                : "FAILED: the conversions differ from the original round()");
+    }
+}
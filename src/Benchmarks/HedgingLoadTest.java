@@ -0,0 +1,241 @@
+package Benchmarks;
+
+import Code.CurrencyPair;
+import Code.HedgedRateProvider;
+import Code.RateProvider;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is an independent class in the application.
+ * It compares the latency of rate requests sent to a single provider with the latency of the same requests sent
+ * through a HedgedRateProvider, and reports the load the hedged requests add. It runs offline against stub providers
+ * with injected latency: most requests take 10 to 30 ms, and a small share of them stall for 300 to 1000 ms.
+ * A third run lets the preferred provider fail every request to show the failover and its circuit breaker.
+ * Like the currconv API, the stubs answer at most two pairs per server request, and the single and hedged runs are
+ * repeated with calls of many pairs, the size of a full rate refresh, to show that hedging a refresh repeats only its
+ * slow server requests rather than the whole refresh.
+ * Usage:
+ * <pre>
+ *     HedgingLoadTest [--clients=8] [--requests=2000] [--slowPercent=3] [--refreshPairs=40]
+ * </pre>
+ */
+public class HedgingLoadTest {
+
+    private static final int MAX_PAIRS_PER_REQUEST = 2;
+
+    /**
+     * A rate provider that answers every server request after an injected delay, or fails.
+     */
+    private static final class StubProvider implements RateProvider {
+        private final String name;
+        private final double slowShare;
+        private final double failureShare;
+        private final AtomicLong calls = new AtomicLong();
+
+        /**
+         * Parameterized constructor.
+         * @param name The name of the provider.
+         * @param slowShare The share of requests that stall, between 0 and 1.
+         * @param failureShare The share of requests that fail, between 0 and 1.
+         */
+        private StubProvider(String name, double slowShare, double failureShare) {
+            this.name = name;
+            this.slowShare = slowShare;
+            this.failureShare = failureShare;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Sends one server request per MAX_PAIRS_PER_REQUEST pairs. Every request waits for the injected delay, then
+         * answers a rate of 1 for its pairs.
+         * @param pairs The currency pairs.
+         * @param rates The map the rates are stored in.
+         * @return Returns false for the injected share of failures.
+         * @throws IOException Thrown if the request is cancelled.
+         */
+        @Override
+        public boolean fetchRates(List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates) throws IOException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int start = 0; start < pairs.size(); start += MAX_PAIRS_PER_REQUEST) {
+                calls.incrementAndGet();
+                long delayMillis = random.nextDouble() < slowShare ? random.nextLong(300, 1000) : random.nextLong(10, 30);
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Cancelled");
+                }
+                if (random.nextDouble() < failureShare) {
+                    return false;
+                }
+                for (CurrencyPair pair : pairs.subList(start, Math.min(start + MAX_PAIRS_PER_REQUEST, pairs.size()))) {
+                    rates.put(pair, 1.0);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int getMaxPairsPerRequest() {
+            return MAX_PAIRS_PER_REQUEST;
+        }
+
+        @Override
+        public Map<String, Map<String, String>> fetchCurrencies() {
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Returns a percentile of sorted latencies.
+     * @param sorted The latencies in nanoseconds, sorted.
+     * @param percentile The percentile, between 0 and 100.
+     * @return Returns the latency in milliseconds.
+     */
+    private static double percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    /**
+     * Creates currency pairs from USD to other currencies.
+     * @param count The number of pairs.
+     * @return Returns the pairs.
+     */
+    private static List<CurrencyPair> createPairs(int count) {
+        Currency usd = Currency.getInstance("USD");
+        List<Currency> targets = new ArrayList<>(Currency.getAvailableCurrencies());
+        targets.sort((a, b) -> a.getCurrencyCode().compareTo(b.getCurrencyCode()));
+        List<CurrencyPair> pairs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pairs.add(new CurrencyPair(usd, targets.get(i % targets.size())));
+        }
+        return pairs;
+    }
+
+    /**
+     * Sends requests from several client threads and prints the latency percentiles and the load on the stubs.
+     * @param label The name of the run.
+     * @param provider The provider the requests are sent to.
+     * @param stubs The stub providers behind it.
+     * @param clients The number of client threads.
+     * @param requests The total number of requests.
+     * @param pairs The pairs every request asks for.
+     * @throws InterruptedException Thrown if the test is interrupted.
+     */
+    private static void run(String label, RateProvider provider, List<StubProvider> stubs, int clients, int requests,
+                            List<CurrencyPair> pairs) throws InterruptedException {
+        long[] latencies = new long[requests];
+        AtomicLong nextRequest = new AtomicLong();
+        AtomicLong failures = new AtomicLong();
+        Thread[] threads = new Thread[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Thread(() -> {
+                long index;
+                while ((index = nextRequest.getAndIncrement()) < requests) {
+                    long start = System.nanoTime();
+                    try {
+                        if (!provider.fetchRates(pairs, new HashMap<>())) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        failures.incrementAndGet();
+                    }
+                    latencies[(int) index] = System.nanoTime() - start;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Arrays.sort(latencies);
+        long calls = 0;
+        for (StubProvider stub : stubs) {
+            calls += stub.calls.get();
+        }
+        int serverRequests = (pairs.size() + MAX_PAIRS_PER_REQUEST - 1) / MAX_PAIRS_PER_REQUEST;
+        System.out.printf("%-9s p50 %7.1f  p90 %7.1f  p99 %7.1f  p99.9 %7.1f  max %7.1f ms, %d failed, "
+                        + "%.3f server requests per needed request%n", label, percentile(latencies, 50),
+                percentile(latencies, 90), percentile(latencies, 99), percentile(latencies, 99.9),
+                latencies[requests - 1] / 1e6, failures.get(), (double) calls / ((long) requests * serverRequests));
+        if (provider instanceof HedgedRateProvider) {
+            HedgedRateProvider hedged = (HedgedRateProvider) provider;
+            System.out.printf("          %d hedged requests%n", hedged.getHedges());
+            for (HedgedRateProvider.ProviderHealth health : hedged.getHealth()) {
+                System.out.printf("          %s: %s, %d requests, %d failed, %d cancelled, p95 %.1f ms%n",
+                        health.getName(), health.getState(), health.getRequests(), health.getFailures(),
+                        health.getCancellations(), health.getP95Millis());
+            }
+        }
+    }
+
+    /**
+     * Runs the single provider, hedged and failover tests.
+     * @param args The options.
+     * @throws InterruptedException Thrown if the test is interrupted.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int clients = 8;
+        int requests = 2000;
+        double slowShare = 0.03;
+        int refreshPairs = 40;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--requests=")) {
+                requests = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--slowPercent=")) {
+                slowShare = Double.parseDouble(value) / 100;
+            }
+            else if (arg.startsWith("--refreshPairs=")) {
+                refreshPairs = Integer.parseInt(value);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        List<CurrencyPair> onePair = createPairs(1);
+        StubProvider single = new StubProvider("single", slowShare, 0);
+        run("single", single, Collections.singletonList(single), clients, requests, onePair);
+
+        List<StubProvider> stubs = new ArrayList<>();
+        stubs.add(new StubProvider("primary", slowShare, 0));
+        stubs.add(new StubProvider("secondary", slowShare, 0));
+        HedgedRateProvider hedged = new HedgedRateProvider(stubs);
+        run("hedged", hedged, stubs, clients, requests, onePair);
+
+        List<StubProvider> failing = new ArrayList<>();
+        failing.add(new StubProvider("failing", slowShare, 1));
+        failing.add(new StubProvider("healthy", slowShare, 0));
+        run("failover", new HedgedRateProvider(failing), failing, clients, requests, onePair);
+
+        System.out.printf("Refreshes of %d pairs, %d server requests each%n", refreshPairs,
+                (refreshPairs + MAX_PAIRS_PER_REQUEST - 1) / MAX_PAIRS_PER_REQUEST);
+        List<CurrencyPair> refresh = createPairs(refreshPairs);
+        int refreshes = Math.max(clients, requests / 20);
+        StubProvider singleRefresh = new StubProvider("single", slowShare, 0);
+        run("single", singleRefresh, Collections.singletonList(singleRefresh), clients, refreshes, refresh);
+        for (StubProvider stub : stubs) {
+            stub.calls.set(0);
+        }
+        run("hedged", hedged, stubs, clients, refreshes, refresh);
+    }
+}
@@ -0,0 +1,193 @@
+package Benchmarks;
+
+import Code.Connection;
+import Code.HttpCache;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This is an independent class in the application.
+ * It measures what the HTTP response cache saves, against a local stub server that serves a currency list with an
+ * 'ETag', a 'Last-Modified' date and 'Cache-Control: max-age=0', gzip encoded when the request accepts it, and answers
+ * matching revalidations with '304 Not Modified'. The list is fetched repeatedly without a cache, with a cache, and
+ * after a simulated restart with a new cache opened on the same directory, and the full transfers, 304s and bytes
+ * sent by the server are reported for every run. A last run deletes the cache directory while every request is being
+ * answered, so that neither a 200 nor a 304 can be stored, and checks that the responses are still returned.
+ * The APIKey.json resource must be on the class path.
+ * Usage:
+ * <pre>
+ *     HttpCacheTest [--requests=50] [--currencies=170]
+ * </pre>
+ */
+public class HttpCacheTest {
+
+    private static final String ETAG = "\"currencies-1\"";
+    private static final String LAST_MODIFIED = "Fri, 16 Oct 2026 08:00:00 GMT";
+    private static final AtomicLong FULL_TRANSFERS = new AtomicLong();
+    private static final AtomicLong NOT_MODIFIED = new AtomicLong();
+    private static final AtomicLong BYTES_SENT = new AtomicLong();
+    private static volatile Path deletedDirectory;
+
+    /**
+     * Deletes a directory and the files in it, if it exists.
+     * @param directory The directory.
+     * @throws IOException Handles the Files methods.
+     */
+    private static void deleteDirectory(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Creates the body of the stub currency list.
+     * @param currencies The number of currencies in the list.
+     * @return Returns the JSON body.
+     */
+    private static byte[] createBody(int currencies) {
+        StringBuilder json = new StringBuilder("{\"results\":{");
+        for (int i = 0; i < currencies; i++) {
+            String code = "" + (char) ('A' + i / 676) + (char) ('A' + i / 26 % 26) + (char) ('A' + i % 26);
+            json.append(i == 0 ? "" : ",").append('"').append(code).append("\":{\"currencyName\":\"Currency ")
+                    .append(code).append("\",\"currencySymbol\":\"").append(code).append("\",\"id\":\"")
+                    .append(code).append("\"}");
+        }
+        return json.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Answers a request to the stub server.
+     * @param exchange The request and its response.
+     * @param body The uncompressed body.
+     * @param gzipBody The gzip encoded body.
+     * @throws IOException Handles the HttpExchange methods.
+     */
+    private static void handle(HttpExchange exchange, byte[] body, byte[] gzipBody) throws IOException {
+        Path directory = deletedDirectory;
+        if (directory != null) {
+            deleteDirectory(directory);
+        }
+        exchange.getResponseHeaders().set("ETag", ETAG);
+        exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+        exchange.getResponseHeaders().set("Cache-Control", "max-age=0");
+        if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            NOT_MODIFIED.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        byte[] sent = body;
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            sent = gzipBody;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        FULL_TRANSFERS.incrementAndGet();
+        BYTES_SENT.addAndGet(sent.length);
+        exchange.sendResponseHeaders(200, sent.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(sent);
+        }
+    }
+
+    /**
+     * Fetches the currency list repeatedly and prints what the server sent.
+     * @param label The name of the run.
+     * @param url The URL of the currency list, without the API key.
+     * @param requests The number of requests.
+     * @param expected The expected body.
+     * @throws IOException Handles the Connection methods.
+     */
+    private static void run(String label, String url, int requests, byte[] expected) throws IOException {
+        FULL_TRANSFERS.set(0);
+        NOT_MODIFIED.set(0);
+        BYTES_SENT.set(0);
+        int mismatches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            try (Connection connection = new Connection(url)) {
+                InputStream content = connection.getContent();
+                if (connection.getResponseCode() != 200 || content == null
+                        || !Arrays.equals(content.readAllBytes(), expected)) {
+                    mismatches++;
+                }
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%-9s %4d full transfers, %4d not modified, %9d bytes sent, %.2f ms per request, "
+                + "%d wrong bodies%n", label, FULL_TRANSFERS.get(), NOT_MODIFIED.get(), BYTES_SENT.get(),
+                millis / requests, mismatches);
+    }
+
+    /**
+     * Runs the uncached, cached, restarted and failing cache tests.
+     * @param args The options.
+     * @throws IOException Handles the HttpServer, HttpCache and Files methods.
+     */
+    public static void main(String[] args) throws IOException {
+        int requests = 50;
+        int currencies = 170;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--requests=")) {
+                requests = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--currencies=")) {
+                currencies = Integer.parseInt(value);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        byte[] body = createBody(currencies);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        byte[] gzipBody = compressed.toByteArray();
+        System.out.printf("Currency list: %d bytes, %d bytes gzip encoded%n", body.length, gzipBody.length);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/v7/currencies", exchange -> handle(exchange, body, gzipBody));
+        server.start();
+        Path directory = Files.createTempDirectory("http-cache");
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v7/currencies?apiKey=";
+            Connection.setCache(null);
+            run("uncached", url, requests, body);
+            Connection.setCache(new HttpCache(directory, 1 << 20));
+            run("cached", url, requests, body);
+            HttpCache restarted = new HttpCache(directory, 1 << 20);
+            Connection.setCache(restarted);
+            run("restarted", url, requests, body);
+            System.out.printf("Cache: %d entries, %d bytes%n", restarted.getEntryCount(), restarted.getSize());
+            System.out.println("Deleting the cache directory during every request, the cache errors are printed:");
+            deletedDirectory = directory;
+            run("failing", url, 3, body);
+        } finally {
+            deletedDirectory = null;
+            server.stop(0);
+            deleteDirectory(directory);
+        }
+    }
+}
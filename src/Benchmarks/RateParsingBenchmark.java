@@ -0,0 +1,98 @@
+package Benchmarks;
+
+import Code.Currencies;
+import Code.CurrencyPair;
+import Code.CurrencyRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of parsing canned 'compact=ultra' rate responses, without connecting to the API server.
+ * The single response holds the two pairs of one request, the pivot response the rates of every supported currency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateParsingBenchmark {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private List<CurrencyPair> singlePairs;
+    private byte[] singleResponse;
+    private List<CurrencyPair> pivotPairs;
+    private byte[] pivotResponse;
+
+    /**
+     * Builds the canned responses.
+     * @throws IOException Handles CurrencyRegistry.getInstance().
+     */
+    @Setup
+    public void setUp() throws IOException {
+        CurrencyRegistry registry = CurrencyRegistry.getInstance();
+        Currency pivot = Currency.getInstance("USD");
+        singlePairs = new ArrayList<>();
+        singlePairs.add(new CurrencyPair(pivot, Currency.getInstance("EUR")));
+        singlePairs.add(new CurrencyPair(Currency.getInstance("EUR"), pivot));
+        singleResponse = "{\"USD_EUR\":0.845204,\"EUR_USD\":1.183146}".getBytes(StandardCharsets.UTF_8);
+        pivotPairs = new ArrayList<>();
+        StringBuilder response = new StringBuilder("{");
+        for (int i = 0; i < registry.size(); i++) {
+            CurrencyPair pair = new CurrencyPair(pivot, registry.getCurrency(i));
+            pivotPairs.add(pair);
+            if (i > 0) {
+                response.append(',');
+            }
+            response.append('"').append(pair.getKey()).append("\":").append(0.25 + i * 0.731);
+        }
+        pivotResponse = response.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Parses the response of a single request.
+     * @return Returns the parsed rates.
+     * @throws IOException Handles parseRates().
+     */
+    @Benchmark
+    public Map<CurrencyPair, Double> parseSingleResponse() throws IOException {
+        Map<CurrencyPair, Double> rates = new HashMap<>();
+        Currencies.parseRates(new ByteArrayInputStream(singleResponse), singlePairs, rates);
+        return rates;
+    }
+
+    /**
+     * Parses a response holding the rates of every supported currency.
+     * @return Returns the parsed rates.
+     * @throws IOException Handles parseRates().
+     */
+    @Benchmark
+    public Map<CurrencyPair, Double> parsePivotResponse() throws IOException {
+        Map<CurrencyPair, Double> rates = new HashMap<>();
+        Currencies.parseRates(new ByteArrayInputStream(pivotResponse), pivotPairs, rates);
+        return rates;
+    }
+}
@@ -0,0 +1,89 @@
+package Benchmarks;
+
+import Code.CurrencyRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the currency metadata: loading 'currencies.json', computing the skipped currencies and looking up
+ * the id of a currency name.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private CurrencyRegistry registry;
+    private Set<String> apiCurrencyCodes;
+    private String[] names;
+    private int next;
+
+    /**
+     * Loads the registry and collects the currency codes and names used by the benchmarks.
+     * @throws IOException Handles CurrencyRegistry.getInstance().
+     */
+    @Setup
+    public void setUp() throws IOException {
+        registry = CurrencyRegistry.getInstance();
+        apiCurrencyCodes = new HashSet<>();
+        for (int i = 0; i < registry.size(); i++) {
+            apiCurrencyCodes.add(registry.getCode(i));
+        }
+        apiCurrencyCodes.add("XYZ");
+        List<String> currencyNames = registry.getCurrencyNames();
+        names = currencyNames.toArray(new String[0]);
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Reads 'currencies.json' and builds a new registry, as the first 'new Currencies()' of the application does.
+     * @return Returns the registry.
+     * @throws IOException Handles CurrencyRegistry.load().
+     */
+    @Benchmark
+    public CurrencyRegistry loadRegistry() throws IOException {
+        return CurrencyRegistry.load();
+    }
+
+    /**
+     * Computes the currencies of the API that Java's Currency class does not support.
+     * @return Returns the skipped currencies.
+     */
+    @Benchmark
+    public Set<String> computeSkipCurrencies() {
+        return CurrencyRegistry.computeSkipCurrencies(apiCurrencyCodes);
+    }
+
+    /**
+     * Looks up the id of a currency name, cycling through all names.
+     * @return Returns the currency id.
+     */
+    @Benchmark
+    public String nameToId() {
+        String name = names[next];
+        next = (next + 1 == names.length) ? 0 : next + 1;
+        return registry.getNameToId(name);
+    }
+}
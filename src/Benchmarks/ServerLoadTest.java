@@ -0,0 +1,225 @@
+package Benchmarks;
+
+import Code.ConversionServer;
+import Code.Currencies;
+import Code.CurrencyRegistry;
+import Code.RateMatrix;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This is an independent class in the application.
+ * It load tests the conversion server and reports the throughput and the latency percentiles.
+ * Usage:
+ * <pre>
+ *     ServerLoadTest [--url=http://host:port] [--clients=64] [--seconds=10] [--warmupSeconds=3] [--bulk=0]
+ * </pre>
+ * Without '--url', a server is started in this JVM on a free port with a stubbed rate matrix, so the test runs offline.
+ * Every client sends requests one after the other for random currency pairs and amounts, 'GET /convert' requests by
+ * default or 'POST /convert/bulk' requests of the given number of items with '--bulk'. The latency of every request
+ * after the warm up is recorded, and the exact percentiles are computed from all samples at the end.
+ */
+public class ServerLoadTest {
+
+    /**
+     * A client thread and the latencies it recorded.
+     */
+    private static final class Client extends Thread {
+        private final HttpClient httpClient;
+        private final String baseUrl;
+        private final String[] codes;
+        private final int bulk;
+        private final long warmupEndNanos;
+        private final long endNanos;
+        private final AtomicLong errors;
+        private long[] latencies = new long[1 << 12];
+        private int count;
+
+        /**
+         * Parameterized constructor.
+         * @param httpClient The shared HTTP client.
+         * @param baseUrl The URL of the server.
+         * @param codes The supported currency codes.
+         * @param bulk The number of items per bulk request, or 0 for single conversions.
+         * @param warmupEndNanos The time at which the latencies start being recorded.
+         * @param endNanos The time at which the client stops.
+         * @param errors The shared count of failed requests.
+         */
+        private Client(HttpClient httpClient, String baseUrl, String[] codes, int bulk, long warmupEndNanos,
+                       long endNanos, AtomicLong errors) {
+            this.httpClient = httpClient;
+            this.baseUrl = baseUrl;
+            this.codes = codes;
+            this.bulk = bulk;
+            this.warmupEndNanos = warmupEndNanos;
+            this.endNanos = endNanos;
+            this.errors = errors;
+        }
+
+        /**
+         * Creates a request for random currencies and amounts.
+         * @return Returns the request.
+         */
+        private HttpRequest createRequest() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (bulk == 0) {
+                String query = "/convert?from=" + codes[random.nextInt(codes.length)] + "&to="
+                        + codes[random.nextInt(codes.length)] + "&amount=" + random.nextInt(1, 1000000) + "."
+                        + random.nextInt(10, 100);
+                return HttpRequest.newBuilder(URI.create(baseUrl + query)).GET().build();
+            }
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < bulk; i++) {
+                body.append(i == 0 ? "" : ",").append("{\"amount\":\"").append(random.nextInt(1, 1000000))
+                        .append("\",\"from\":\"").append(codes[random.nextInt(codes.length)])
+                        .append("\",\"to\":\"").append(codes[random.nextInt(codes.length)]).append("\"}");
+            }
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/convert/bulk"))
+                    .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString()))
+                    .build();
+        }
+
+        /**
+         * Sends requests until the end of the test.
+         */
+        @Override
+        public void run() {
+            long now = System.nanoTime();
+            while (now < endNanos) {
+                HttpRequest request = createRequest();
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                    if (response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    errors.incrementAndGet();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                now = System.nanoTime();
+                if (start >= warmupEndNanos) {
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = now - start;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a percentile of sorted latencies.
+     * @param sorted The latencies in nanoseconds, sorted.
+     * @param percentile The percentile, between 0 and 100.
+     * @return Returns the latency in milliseconds.
+     */
+    private static double percentile(long[] sorted, double percentile) {
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    /**
+     * Installs a stubbed rate matrix with a made up rate for every supported currency.
+     * @param registry The currency registry.
+     */
+    private static void installStubRates(CurrencyRegistry registry) {
+        double[] pivotRates = new double[registry.size()];
+        for (int i = 0; i < pivotRates.length; i++) {
+            pivotRates[i] = 0.25 + i * 0.731;
+        }
+        int pivotOrdinal = registry.getOrdinal("USD");
+        pivotRates[pivotOrdinal] = 1;
+        Currencies.setRateMatrix(new RateMatrix(pivotOrdinal, pivotRates, System.currentTimeMillis()));
+    }
+
+    /**
+     * Runs the load test and prints the throughput and the latency percentiles.
+     * @param args The options.
+     * @throws IOException Handles the Currencies constructor and the ConversionServer().
+     * @throws InterruptedException Thrown if the test is interrupted.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String url = null;
+        int clients = 64;
+        int seconds = 10;
+        int warmupSeconds = 3;
+        int bulk = 0;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--url=")) {
+                url = value;
+            }
+            else if (arg.startsWith("--clients=")) {
+                clients = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--seconds=")) {
+                seconds = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--warmupSeconds=")) {
+                warmupSeconds = Integer.parseInt(value);
+            }
+            else if (arg.startsWith("--bulk=")) {
+                bulk = Integer.parseInt(value);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        Currencies currencies = new Currencies();
+        CurrencyRegistry registry = currencies.getRegistry();
+        ConversionServer server = null;
+        if (url == null) {
+            installStubRates(registry);
+            server = new ConversionServer(currencies, new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            url = "http://127.0.0.1:" + server.getPort();
+        }
+        String[] codes = new String[registry.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = registry.getCode(i);
+        }
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        AtomicLong errors = new AtomicLong();
+        long warmupEndNanos = System.nanoTime() + warmupSeconds * 1000000000L;
+        long endNanos = warmupEndNanos + seconds * 1000000000L;
+        Client[] threads = new Client[clients];
+        for (int i = 0; i < clients; i++) {
+            threads[i] = new Client(httpClient, url, codes, bulk, warmupEndNanos, endNanos, errors);
+            threads[i].start();
+        }
+        int total = 0;
+        for (Client thread : threads) {
+            thread.join();
+            total += thread.count;
+        }
+        if (server != null) {
+            server.stop();
+        }
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (Client thread : threads) {
+            System.arraycopy(thread.latencies, 0, latencies, offset, thread.count);
+            offset += thread.count;
+        }
+        Arrays.sort(latencies);
+        if (total == 0) {
+            System.out.println("No requests completed");
+            return;
+        }
+        System.out.printf("%d clients, %d requests in %d s (%d failed): %.0f requests/s%n", clients, total, seconds,
+                errors.get(), (double) total / seconds);
+        System.out.printf("latency ms: p50 %.3f  p90 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n", percentile(latencies, 50),
+                percentile(latencies, 90), percentile(latencies, 99), percentile(latencies, 99.9),
+                latencies[total - 1] / 1e6);
+    }
+}
@@ -0,0 +1,125 @@
+package Code;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * This class scans the amounts entered by the user, character by character, without regular expressions.
+ * An amount is made of digits, the grouping separators of the locale between the digits of the integer part, e.g.
+ * '1,234,567', and at most one decimal separator, e.g. '1,234.50' in English or '1.234,50' in German. When the
+ * grouping separator of the locale is a space, such as the narrow no-break space of French, a plain space is accepted
+ * too. Groups are not required to have three digits, so partially typed amounts are valid.
+ * Scanning allocates nothing; the digits of an amount are copied into a caller provided StringBuilder.
+ */
+public final class AmountParser {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final char decimalSeparator;
+    private final char groupingSeparator;
+    private final boolean spaceGrouping;
+
+    /**
+     * Default Constructor.
+     * Uses the separators of the default formatting locale.
+     */
+    public AmountParser() {
+        this(Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    /**
+     * Parameterized constructor.
+     * @param locale The locale whose decimal and grouping separators are accepted.
+     */
+    public AmountParser(Locale locale) {
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+        this.decimalSeparator = symbols.getDecimalSeparator();
+        this.groupingSeparator = symbols.getGroupingSeparator();
+        this.spaceGrouping = Character.isSpaceChar(groupingSeparator);
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * @param c A character.
+     * @return Returns true if the character separates groups of digits.
+     */
+    private boolean isGroupingSeparator(char c) {
+        return c == groupingSeparator || (spaceGrouping && Character.isSpaceChar(c));
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Scans an amount and copies its digits, without separators, into a buffer.
+     * @param text The amount.
+     * @param digits The buffer the digits are appended to, or null if only the amount is to be validated.
+     * @return Returns the number of digits after the decimal separator, or -1 if the text is not a valid amount.
+     * An empty text is a valid amount without digits.
+     */
+    public int scan(CharSequence text, StringBuilder digits) {
+        int scale = -1;
+        char previous = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits != null) {
+                    digits.append(c);
+                }
+                if (scale != -1) {
+                    scale++;
+                }
+            }
+            else if (c == decimalSeparator) {
+                if (scale != -1) {
+                    return -1;
+                }
+                scale = 0;
+            }
+            else if (isGroupingSeparator(c)) {
+                if (scale != -1 || i == 0 || isGroupingSeparator(previous)) {
+                    return -1;
+                }
+            }
+            else {
+                return -1;
+            }
+            previous = c;
+        }
+        return Math.max(scale, 0);
+    }
+
+    /**
+     * @param text The amount.
+     * @return Returns true if the text is a valid, possibly empty or partially typed, amount.
+     */
+    public boolean isValid(CharSequence text) {
+        return scan(text, null) != -1;
+    }
+
+    /**
+     * Parses an amount.
+     * @param text The amount.
+     * @return Returns the amount, or null if the text is not a valid amount or has no digits.
+     */
+    public BigDecimal parse(CharSequence text) {
+        StringBuilder digits = new StringBuilder(text.length());
+        int scale = scan(text, digits);
+        if (scale == -1 || digits.length() == 0) {
+            return null;
+        }
+        return new BigDecimal(new BigInteger(digits.toString()), scale);
+    }
+
+    /**
+     * @return Returns the decimal separator of the locale.
+     */
+    public char getDecimalSeparator() {
+        return decimalSeparator;
+    }
+}
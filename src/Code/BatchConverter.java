@@ -0,0 +1,649 @@
+package Code;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * This is an independent class in the application.
+ * It converts a CSV or NDJSON file of 'amount,from,to' rows and writes the converted rows to another file.
+ * The format of each file is chosen by its extension: '.csv', or '.ndjson', '.jsonl' and '.json' for one JSON object
+ * per line, e.g. {"amount":"12.50","from":"USD","to":"EUR"}. A CSV header row starting with 'amount' is skipped.
+ * Usage:
+ * <pre>
+ *     BatchConverter input output [--parsers=N] [--converters=N] [--batchSize=N]
+ * </pre>
+ * The rates are resolved once, before the conversion starts, from the rate snapshot file or else from the server,
+ * so every row of a file is converted with the same rates.
+ * The rows are processed by a pipeline of threads: one reader, a number of parsers, a number of converters and one
+ * writer, connected by bounded queues. Rows travel in batches taken from a fixed pool. The reader waits for a free
+ * batch before reading more rows, so a slow stage holds back the reader and the memory used does not depend on the
+ * size of the file. The writer writes the batches in the order they were read.
+ * Rejected rows are left out of the output and reported with their line number on the standard error. Like in the
+ * conversion server, amounts must not be negative and may have at most 40 digits before and after the decimal point,
+ * and rows longer than 'currency.batch.maxLineChars' characters (4096 by default) are rejected without being read
+ * into memory, so a single malformed row cannot exhaust the memory or the processors.
+ * When the conversion is done, the number of rows converted per second is printed.
+ */
+public class BatchConverter {
+
+    /**
+     * The supported file formats.
+     */
+    private enum Format {
+        CSV, NDJSON
+    }
+
+    /**
+     * A batch of consecutive rows of the input file. Batches are reused once they have been written.
+     */
+    private static final class Batch {
+        private final String[] lines;
+        private final long[] lineNumbers;
+        private final BigDecimal[] amounts;
+        private final int[] fromOrdinals;
+        private final int[] toOrdinals;
+        private final String[] errors;
+        private final boolean[] tooLong;
+        private final StringBuilder output = new StringBuilder();
+        private final StringBuilder rejections = new StringBuilder();
+        private long sequence;
+        private int size;
+        private int converted;
+        private boolean last;
+
+        /**
+         * Parameterized constructor.
+         * @param capacity The maximum number of rows of the batch.
+         */
+        private Batch(int capacity) {
+            lines = new String[capacity];
+            lineNumbers = new long[capacity];
+            amounts = new BigDecimal[capacity];
+            fromOrdinals = new int[capacity];
+            toOrdinals = new int[capacity];
+            errors = new String[capacity];
+            tooLong = new boolean[capacity];
+        }
+    }
+
+    /**
+     * Reads the lines of the input file like BufferedReader.readLine(), but keeps at most MAX_LINE_CHARS + 1 characters
+     * of a line in memory and skips the rest of a longer line.
+     */
+    private static final class LineReader {
+        private final Reader reader;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private boolean skipLineFeed;
+
+        /**
+         * Parameterized constructor.
+         * @param reader The reader of the input file.
+         */
+        private LineReader(Reader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Reads the next characters into the buffer.
+         * @return Returns false at the end of the file.
+         * @throws IOException Handles read().
+         */
+        private boolean fill() throws IOException {
+            int read = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            limit = Math.max(read, 0);
+            return read > 0;
+        }
+
+        /**
+         * Reads a line, which ends with '\n', '\r' or '\r\n'.
+         * @param line The buffer the line is read into. It is cleared first.
+         * @return Returns false at the end of the file, true if a line was read.
+         * @throws IOException Handles fill().
+         */
+        private boolean readLine(StringBuilder line) throws IOException {
+            line.setLength(0);
+            boolean read = false;
+            while (true) {
+                if (position == limit && !fill()) {
+                    return read;
+                }
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (buffer[position] == '\n') {
+                        position++;
+                        continue;
+                    }
+                }
+                read = true;
+                int start = position;
+                while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                    position++;
+                }
+                int room = MAX_LINE_CHARS + 1 - line.length();
+                if (room > 0) {
+                    line.append(buffer, start, Math.min(position - start, room));
+                }
+                if (position < limit) {
+                    skipLineFeed = buffer[position] == '\r';
+                    position++;
+                    return true;
+                }
+            }
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String PIVOT_CODE = "USD";
+    private static final String CSV_HEADER = "amount,from,to,converted";
+    private static final int MAX_DIGITS = 40;
+    private static final int MAX_LINE_CHARS = Integer.getInteger("currency.batch.maxLineChars", 4096);
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currencies currencies;
+    private final CurrencyRegistry registry;
+    private final RateMatrix matrix;
+    private final int parsers;
+    private final int converters;
+    private final int batchSize;
+    private final int poolSize;
+    private final BlockingQueue<Batch> freeBatches;
+    private final BlockingQueue<Batch> parseQueue;
+    private final BlockingQueue<Batch> convertQueue;
+    private final BlockingQueue<Batch> writeQueue;
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private volatile Thread writerThread;
+    private volatile Throwable failure;
+    private long rows;
+    private long rejected;
+
+    /**
+     * Parameterized constructor.
+     * @param currencies The currencies used to convert the amounts.
+     * @param matrix The rates used for every row.
+     * @param parsers The number of parser threads.
+     * @param converters The number of converter threads.
+     * @param batchSize The number of rows per batch.
+     */
+    public BatchConverter(Currencies currencies, RateMatrix matrix, int parsers, int converters, int batchSize) {
+        if (parsers < 1 || converters < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("The thread counts and the batch size must be positive");
+        }
+        this.currencies = currencies;
+        this.registry = currencies.getRegistry();
+        this.matrix = matrix;
+        this.parsers = parsers;
+        this.converters = converters;
+        this.batchSize = batchSize;
+        this.poolSize = 2 * (parsers + converters) + 2;
+        this.freeBatches = new ArrayBlockingQueue<>(poolSize);
+        this.parseQueue = new ArrayBlockingQueue<>(poolSize);
+        this.convertQueue = new ArrayBlockingQueue<>(poolSize);
+        this.writeQueue = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            freeBatches.add(new Batch(batchSize));
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the format of a file from its extension.
+     * @param path The path of the file.
+     * @return Returns the format.
+     * @throws IllegalArgumentException Thrown if the extension is not supported.
+     */
+    private static Format formatOf(Path path) {
+        String name = path.getFileName().toString().toLowerCase();
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return Format.NDJSON;
+        }
+        throw new IllegalArgumentException("Unsupported file format: " + path);
+    }
+
+    /**
+     * Returns the value of a CSV field without surrounding blanks and quotes.
+     * @param line The row.
+     * @param start The index of the first character of the field.
+     * @param end The index after the last character of the field.
+     * @return Returns the value of the field.
+     */
+    private static String field(String line, int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end - start >= 2 && line.charAt(start) == '"' && line.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        return line.substring(start, end);
+    }
+
+    /**
+     * Stores the parsed values of a row in a batch.
+     * @param batch The batch.
+     * @param index The index of the row in the batch.
+     * @param amount The amount, or null if it is missing.
+     * @param from The code of the base currency, or null if it is missing.
+     * @param to The code of the target currency, or null if it is missing.
+     * @return Returns an error message, or null if the row is valid.
+     */
+    private String store(Batch batch, int index, String amount, String from, String to) {
+        if (amount == null || from == null || to == null) {
+            return "Expected amount, from and to";
+        }
+        try {
+            batch.amounts[index] = new BigDecimal(amount);
+        } catch (NumberFormatException e) {
+            return "Invalid amount: " + amount;
+        }
+        BigDecimal value = batch.amounts[index];
+        if (value.signum() < 0 || value.scale() > MAX_DIGITS || value.precision() - value.scale() > MAX_DIGITS) {
+            return "Invalid amount: " + amount;
+        }
+        batch.fromOrdinals[index] = registry.getOrdinal(from.toUpperCase());
+        if (batch.fromOrdinals[index] == -1) {
+            return "Unsupported currency: " + from;
+        }
+        batch.toOrdinals[index] = registry.getOrdinal(to.toUpperCase());
+        if (batch.toOrdinals[index] == -1) {
+            return "Unsupported currency: " + to;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a CSV row of a batch.
+     * @param batch The batch.
+     * @param index The index of the row in the batch.
+     * @return Returns an error message, or null if the row is valid.
+     */
+    private String parseCsv(Batch batch, int index) {
+        String line = batch.lines[index];
+        int first = line.indexOf(',');
+        int second = (first == -1) ? -1 : line.indexOf(',', first + 1);
+        if (second == -1 || line.indexOf(',', second + 1) != -1) {
+            return "Expected three fields";
+        }
+        return store(batch, index, field(line, 0, first), field(line, first + 1, second),
+                field(line, second + 1, line.length()));
+    }
+
+    /**
+     * Parses an NDJSON row of a batch with the streaming Jackson parser.
+     * @param batch The batch.
+     * @param index The index of the row in the batch.
+     * @return Returns an error message, or null if the row is valid.
+     * @throws IOException Thrown if the row is not a JSON object.
+     */
+    private String parseJson(Batch batch, int index) throws IOException {
+        String amount = null;
+        String from = null;
+        String to = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(batch.lines[index])) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return "Expected a JSON object";
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value.isStructStart()) {
+                    parser.skipChildren();
+                }
+                else if ("amount".equals(name)) {
+                    amount = parser.getText();
+                }
+                else if ("from".equals(name)) {
+                    from = parser.getText();
+                }
+                else if ("to".equals(name)) {
+                    to = parser.getText();
+                }
+            }
+        }
+        return store(batch, index, amount, from, to);
+    }
+
+    /**
+     * Appends a converted row to the output of a batch.
+     * @param batch The batch.
+     * @param index The index of the row in the batch.
+     * @param convertedAmount The converted amount.
+     * @param format The output format.
+     */
+    private void appendRow(Batch batch, int index, BigDecimal convertedAmount, Format format) {
+        StringBuilder output = batch.output;
+        String from = registry.getCode(batch.fromOrdinals[index]);
+        String to = registry.getCode(batch.toOrdinals[index]);
+        if (format == Format.CSV) {
+            output.append(batch.amounts[index].toPlainString()).append(',').append(from).append(',').append(to)
+                    .append(',').append(convertedAmount.toPlainString());
+        }
+        else {
+            output.append("{\"amount\":").append(batch.amounts[index].toPlainString())
+                    .append(",\"from\":\"").append(from).append("\",\"to\":\"").append(to)
+                    .append("\",\"converted\":").append(convertedAmount.toPlainString()).append('}');
+        }
+        output.append('\n');
+    }
+
+    /**
+     * Runs a stage of the pipeline on a new thread.
+     * If the stage fails, the failure is recorded and every thread of the pipeline, including the writer, is interrupted.
+     * @param name The name of the thread.
+     * @param stage The stage.
+     */
+    private void startThread(String name, Runnable stage) {
+        Thread thread = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                for (Thread other : threads) {
+                    other.interrupt();
+                }
+                writerThread.interrupt();
+            }
+        }, name);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    /**
+     * Reads the input file into batches and hands them to the parsers. The last batch is marked as such.
+     * @param reader The reader of the input file.
+     * @param format The input format.
+     * @throws IOException Handles LineReader.readLine().
+     * @throws InterruptedException Thrown if the pipeline is stopped.
+     */
+    private void read(BufferedReader reader, Format format) throws IOException, InterruptedException {
+        long sequence = 0;
+        long lineNumber = 1;
+        LineReader lineReader = new LineReader(reader);
+        StringBuilder line = new StringBuilder();
+        boolean more = lineReader.readLine(line);
+        if (format == Format.CSV && more && line.toString().trim().toLowerCase().startsWith("amount")) {
+            more = lineReader.readLine(line);
+            lineNumber++;
+        }
+        while (true) {
+            Batch batch = freeBatches.take();
+            batch.sequence = sequence++;
+            batch.size = 0;
+            while (more && batch.size < batchSize) {
+                boolean tooLong = line.length() > MAX_LINE_CHARS;
+                String text = tooLong ? "" : line.toString();
+                if (tooLong || !text.isBlank()) {
+                    batch.lines[batch.size] = text;
+                    batch.tooLong[batch.size] = tooLong;
+                    batch.lineNumbers[batch.size++] = lineNumber;
+                }
+                more = lineReader.readLine(line);
+                lineNumber++;
+            }
+            batch.last = !more;
+            parseQueue.put(batch);
+            if (batch.last) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Parses the rows of the batches in the parse queue and hands them to the converters.
+     * @param format The input format.
+     */
+    private void parse(Format format) {
+        try {
+            while (true) {
+                Batch batch = parseQueue.take();
+                for (int i = 0; i < batch.size; i++) {
+                    if (batch.tooLong[i]) {
+                        batch.errors[i] = "Row longer than " + MAX_LINE_CHARS + " characters";
+                        continue;
+                    }
+                    try {
+                        batch.errors[i] = (format == Format.CSV) ? parseCsv(batch, i) : parseJson(batch, i);
+                    } catch (JsonProcessingException e) {
+                        batch.errors[i] = "Invalid JSON: " + e.getOriginalMessage();
+                    } catch (IOException e) {
+                        batch.errors[i] = "Invalid JSON";
+                    }
+                }
+                convertQueue.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // The pipeline has finished.
+        }
+    }
+
+    /**
+     * Converts the rows of the batches in the convert queue, formats them and hands them to the writer.
+     * @param format The output format.
+     */
+    private void convert(Format format) {
+        try {
+            while (true) {
+                Batch batch = convertQueue.take();
+                batch.output.setLength(0);
+                batch.rejections.setLength(0);
+                batch.converted = 0;
+                for (int i = 0; i < batch.size; i++) {
+                    String error = batch.errors[i];
+                    if (error == null) {
+                        double conversionRate = matrix.getRate(batch.fromOrdinals[i], batch.toOrdinals[i]);
+                        if (conversionRate == -1) {
+                            error = "No rate from " + registry.getCode(batch.fromOrdinals[i]) + " to "
+                                    + registry.getCode(batch.toOrdinals[i]);
+                        }
+                        else {
+                            appendRow(batch, i, currencies.convert(batch.amounts[i], conversionRate), format);
+                            batch.converted++;
+                        }
+                    }
+                    if (error != null) {
+                        batch.rejections.append("Line ").append(batch.lineNumbers[i]).append(": ").append(error)
+                                .append(System.lineSeparator());
+                    }
+                    batch.lines[i] = null;
+                    batch.amounts[i] = null;
+                }
+                writeQueue.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // The pipeline has finished.
+        }
+    }
+
+    /**
+     * Writes the batches in the write queue in the order they were read, and returns them to the pool.
+     * @param writer The writer of the output file.
+     * @throws IOException Handles the Writer methods.
+     * @throws InterruptedException Thrown if the pipeline is stopped.
+     */
+    private void write(BufferedWriter writer) throws IOException, InterruptedException {
+        Batch[] pending = new Batch[poolSize];
+        long next = 0;
+        while (true) {
+            Batch batch = writeQueue.take();
+            pending[(int) (batch.sequence % pending.length)] = batch;
+            int slot = (int) (next % pending.length);
+            while (pending[slot] != null && pending[slot].sequence == next) {
+                batch = pending[slot];
+                pending[slot] = null;
+                writer.append(batch.output);
+                if (batch.rejections.length() > 0) {
+                    System.err.print(batch.rejections);
+                }
+                rows += batch.converted;
+                rejected += batch.size - batch.converted;
+                if (batch.last) {
+                    return;
+                }
+                freeBatches.put(batch);
+                slot = (int) (++next % pending.length);
+            }
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Converts an input file and writes the converted rows to an output file.
+     * @param input The path of the input file.
+     * @param output The path of the output file.
+     * @throws IOException Thrown if a file cannot be read or written.
+     * @throws InterruptedException Thrown if the calling thread is interrupted.
+     */
+    public void run(Path input, Path output) throws IOException, InterruptedException {
+        Format inputFormat = formatOf(input);
+        Format outputFormat = formatOf(output);
+        rows = 0;
+        rejected = 0;
+        failure = null;
+        writerThread = Thread.currentThread();
+        try (BufferedReader reader = new BufferedReader(Files.newBufferedReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+             BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            if (outputFormat == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.newLine();
+            }
+            for (int i = 0; i < parsers; i++) {
+                startThread("batch-parser-" + i, () -> parse(inputFormat));
+            }
+            for (int i = 0; i < converters; i++) {
+                startThread("batch-converter-" + i, () -> convert(outputFormat));
+            }
+            startThread("batch-reader", () -> {
+                try {
+                    read(reader, inputFormat);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InterruptedException e) {
+                    // The pipeline has failed.
+                }
+            });
+            try {
+                write(writer);
+            } finally {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            if (failure == null) {
+                throw e;
+            }
+            Thread.interrupted();
+        } finally {
+            threads.clear();
+        }
+        if (failure instanceof UncheckedIOException) {
+            throw ((UncheckedIOException) failure).getCause();
+        }
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+    }
+
+    /**
+     * @return Returns the number of rows converted by the last run.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return Returns the number of rows rejected by the last run.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Resolves the rates, converts the input file and prints the number of rows converted per second.
+     * @param args The input file, the output file and the options.
+     * @throws IOException Handles run() and the rate lookup.
+     * @throws InterruptedException Handles run().
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchConverter input output [--parsers=N] [--converters=N] [--batchSize=N]");
+            System.exit(2);
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        int parsers = Math.max(1, processors / 2);
+        int converters = Math.max(1, processors / 2);
+        int batchSize = 4096;
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            int value = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+            if (arg.startsWith("--parsers=")) {
+                parsers = value;
+            }
+            else if (arg.startsWith("--converters=")) {
+                converters = value;
+            }
+            else if (arg.startsWith("--batchSize=")) {
+                batchSize = value;
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        Currencies currencies = new Currencies();
+        RateMatrix matrix = RateSnapshotFile.load(currencies.getRegistry());
+        if (matrix == null) {
+            matrix = currencies.fetchRateMatrix(PIVOT_CODE);
+            if (matrix == null) {
+                System.err.println("Unable to obtain the conversion rates");
+                System.exit(1);
+            }
+        }
+        BatchConverter converter = new BatchConverter(currencies, matrix, parsers, converters, batchSize);
+        long start = System.nanoTime();
+        converter.run(Paths.get(args[0]), Paths.get(args[1]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Converted %d rows (%d rejected) in %.3f s: %.0f rows/s%n", converter.getRows(),
+                converter.getRejected(), seconds, (converter.getRows() + converter.getRejected()) / seconds);
+    }
+}
@@ -0,0 +1,221 @@
+package Code;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class converts large columns of amounts, e.g. ledger exports, into a target currency.
+ * The results are written into an array provided by the caller, so no objects are allocated per amount.
+ * The inner loops are simple counted loops over primitive arrays, which the JIT compiler unrolls and vectorizes with
+ * the SIMD instructions of the processor. Inputs larger than 'currency.bulk.parallelThreshold' amounts
+ * (65536 by default) are split into chunks that are converted in parallel on the common fork/join pool.
+ * The converted amounts are not rounded; Currencies.convert() performs the rounding used for display.
+ * Amounts whose rate is unknown are converted to NaN.
+ */
+public final class BulkConverter {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger("currency.bulk.parallelThreshold", 1 << 16);
+
+    /**
+     * Converts a range of a column of amounts, splitting it in halves while it is larger than the threshold.
+     */
+    private static final class ConvertAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] doubleAmounts;
+        private final long[] longAmounts;
+        private final int[] fromOrdinals;
+        private final double[] rates;
+        private final double[] out;
+        private final int start;
+        private final int end;
+
+        /**
+         * Parameterized constructor.
+         * @param doubleAmounts The amounts, or null if longAmounts is given.
+         * @param longAmounts The amounts, or null if doubleAmounts is given.
+         * @param fromOrdinals The ordinal of the base currency of every amount, or null if all share rates[0].
+         * @param rates The rates to the target currency, indexed by the ordinal of the base currency.
+         * @param out The array the converted amounts are written to.
+         * @param start The first index of the range.
+         * @param end The index after the last index of the range.
+         */
+        private ConvertAction(double[] doubleAmounts, long[] longAmounts, int[] fromOrdinals, double[] rates,
+                              double[] out, int start, int end) {
+            this.doubleAmounts = doubleAmounts;
+            this.longAmounts = longAmounts;
+            this.fromOrdinals = fromOrdinals;
+            this.rates = rates;
+            this.out = out;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= PARALLEL_THRESHOLD) {
+                convertRange(doubleAmounts, longAmounts, fromOrdinals, rates, out, start, end);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ConvertAction(doubleAmounts, longAmounts, fromOrdinals, rates, out, start, middle),
+                    new ConvertAction(doubleAmounts, longAmounts, fromOrdinals, rates, out, middle, end));
+        }
+    }
+
+    /**
+     * This class only has static methods.
+     */
+    private BulkConverter() {
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Converts a range of a column of amounts on the calling thread.
+     * @param doubleAmounts The amounts, or null if longAmounts is given.
+     * @param longAmounts The amounts, or null if doubleAmounts is given.
+     * @param fromOrdinals The ordinal of the base currency of every amount, or null if all share rates[0].
+     * @param rates The rates to the target currency, indexed by the ordinal of the base currency.
+     * @param out The array the converted amounts are written to.
+     * @param start The first index of the range.
+     * @param end The index after the last index of the range.
+     */
+    private static void convertRange(double[] doubleAmounts, long[] longAmounts, int[] fromOrdinals, double[] rates,
+                                     double[] out, int start, int end) {
+        if (fromOrdinals == null) {
+            double rate = rates[0];
+            if (doubleAmounts != null) {
+                for (int i = start; i < end; i++) {
+                    out[i] = doubleAmounts[i] * rate;
+                }
+            }
+            else {
+                for (int i = start; i < end; i++) {
+                    out[i] = longAmounts[i] * rate;
+                }
+            }
+        }
+        else if (doubleAmounts != null) {
+            for (int i = start; i < end; i++) {
+                out[i] = doubleAmounts[i] * rates[fromOrdinals[i]];
+            }
+        }
+        else {
+            for (int i = start; i < end; i++) {
+                out[i] = longAmounts[i] * rates[fromOrdinals[i]];
+            }
+        }
+    }
+
+    /**
+     * Converts a column, in parallel if it is larger than the threshold.
+     * @param doubleAmounts The amounts, or null if longAmounts is given.
+     * @param longAmounts The amounts, or null if doubleAmounts is given.
+     * @param length The number of amounts.
+     * @param fromOrdinals The ordinal of the base currency of every amount, or null if all share rates[0].
+     * @param rates The rates to the target currency, indexed by the ordinal of the base currency.
+     * @param out The array the converted amounts are written to.
+     */
+    private static void run(double[] doubleAmounts, long[] longAmounts, int length, int[] fromOrdinals,
+                            double[] rates, double[] out) {
+        if (out.length < length || (fromOrdinals != null && fromOrdinals.length < length)) {
+            throw new IllegalArgumentException("The output and ordinal arrays must be as long as the amounts");
+        }
+        if (length <= PARALLEL_THRESHOLD) {
+            convertRange(doubleAmounts, longAmounts, fromOrdinals, rates, out, 0, length);
+        }
+        else {
+            ForkJoinPool.commonPool().invoke(new ConvertAction(doubleAmounts, longAmounts, fromOrdinals, rates, out, 0, length));
+        }
+    }
+
+    /**
+     * Returns the rates from every currency to the target currency, with NaN for unknown rates.
+     * @param matrix The rate matrix.
+     * @param toOrdinal The ordinal of the target currency.
+     * @return Returns the rates indexed by the ordinal of the base currency.
+     */
+    private static double[] ratesTo(RateMatrix matrix, int toOrdinal) {
+        double[] rates = new double[matrix.size()];
+        for (int from = 0; from < rates.length; from++) {
+            double rate = matrix.getRate(from, toOrdinal);
+            rates[from] = (rate == -1) ? Double.NaN : rate;
+        }
+        return rates;
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Converts amounts that all share the same base currency.
+     * @param amounts The amounts to be converted.
+     * @param conversionRate The conversion rate from the base to target currency.
+     * @param out The array the converted amounts are written to, at least as long as amounts.
+     */
+    public static void convert(double[] amounts, double conversionRate, double[] out) {
+        run(amounts, null, amounts.length, null, new double[] {conversionRate}, out);
+    }
+
+    /**
+     * Converts amounts that all share the same base currency.
+     * @param amounts The amounts to be converted.
+     * @param conversionRate The conversion rate from the base to target currency.
+     * @param out The array the converted amounts are written to, at least as long as amounts.
+     */
+    public static void convert(long[] amounts, double conversionRate, double[] out) {
+        run(null, amounts, amounts.length, null, new double[] {conversionRate}, out);
+    }
+
+    /**
+     * Converts one amount into every currency, e.g. for a table of the amount in all currencies.
+     * The row of rates of the base currency is copied from the matrix and multiplied in a single loop.
+     * @param amount The amount to be converted.
+     * @param fromOrdinal The ordinal of the base currency.
+     * @param matrix The rate matrix the rates are read from.
+     * @param rates The array the rates are written to, indexed by the ordinal of the target currency, with NaN for
+     *              unknown rates. It must be at least matrix.size() long.
+     * @param out The array the converted amounts are written to, indexed like rates.
+     */
+    public static void convert(double amount, int fromOrdinal, RateMatrix matrix, double[] rates, double[] out) {
+        int size = matrix.size();
+        if (rates.length < size || out.length < size) {
+            throw new IllegalArgumentException("The rate and output arrays must cover every currency");
+        }
+        matrix.getRates(fromOrdinal, rates);
+        for (int to = 0; to < size; to++) {
+            double rate = rates[to] > 0 ? rates[to] : Double.NaN;
+            rates[to] = rate;
+            out[to] = amount * rate;
+        }
+    }
+
+    /**
+     * Converts amounts in different base currencies into one target currency.
+     * @param amounts The amounts to be converted.
+     * @param fromOrdinals The ordinal of the base currency of every amount.
+     * @param toOrdinal The ordinal of the target currency.
+     * @param matrix The rate matrix the rates are read from.
+     * @param out The array the converted amounts are written to, at least as long as amounts.
+     */
+    public static void convert(double[] amounts, int[] fromOrdinals, int toOrdinal, RateMatrix matrix, double[] out) {
+        run(amounts, null, amounts.length, fromOrdinals, ratesTo(matrix, toOrdinal), out);
+    }
+
+    /**
+     * Converts amounts in different base currencies into one target currency.
+     * @param amounts The amounts to be converted.
+     * @param fromOrdinals The ordinal of the base currency of every amount.
+     * @param toOrdinal The ordinal of the target currency.
+     * @param matrix The rate matrix the rates are read from.
+     * @param out The array the converted amounts are written to, at least as long as amounts.
+     */
+    public static void convert(long[] amounts, int[] fromOrdinals, int toOrdinal, RateMatrix matrix, double[] out) {
+        run(null, amounts, amounts.length, fromOrdinals, ratesTo(matrix, toOrdinal), out);
+    }
+}
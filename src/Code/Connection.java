@@ -1,71 +1,298 @@
 package Code;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import javax.net.ssl.HttpsURLConnection;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.GZIPInputStream;
 
 /**
  * This class is used to create and manage connections between the application and the currency API server.
  * An API key is required to make requests to the API server.
- * The API key is read from the APIKey.json file.
- * A connection is established using HTTPS protocol.
+ * The API key is read once from the APIKey.json file.
+ * All requests are sent through a single shared HttpClient, which keeps connections alive between requests
+ * and uses HTTP/2 when the server supports it, so the TLS handshake is not repeated for every request.
+ * The connect and read timeouts can be configured with the 'currency.http.connectTimeoutMillis' and
+ * 'currency.http.readTimeoutMillis' system properties.
+ * Requests ask for gzip encoded responses, and responses are read whole and decoded. When an HttpCache is installed, a
+ * fresh cached response is returned without contacting the server, a stale one is revalidated with 'If-None-Match' and
+ * 'If-Modified-Since', and a '304 Not Modified' answer is reported to the callers as a 200 with the cached body.
  */
-public class Connection {
+public class Connection implements AutoCloseable {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(Long.getLong("currency.http.connectTimeoutMillis", 5000));
+    private static final Duration READ_TIMEOUT = Duration.ofMillis(Long.getLong("currency.http.readTimeoutMillis", 10000));
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    private static final Metrics.Latency REQUEST_LATENCY = Metrics.latency("http.request");
+    private static final Metrics.Counter REQUEST_ERRORS = Metrics.counter("http.errors");
+    private static volatile String API_KEY;
+    private static volatile HttpCache cache;
+    private static volatile boolean cacheOpened;
 
     /*******************************************************************************************************************
      * Instance Variables.
      ******************************************************************************************************************/
-    private HttpsURLConnection connection;
-    private String API_KEY;
+    private final URI uri;
+    private HttpCache.Entry cached;
+    private int responseCode = -1;
+    private InputStream content;
+    private boolean sent;
 
     /**
      * Parameterized constructor.
-     * @param urlString Specifies the URL to the API server.
-     * @throws IOException Handles setKey() and createConnection().
+     * @param urlString Specifies the URL to the API server. The API key is appended to it.
+     * @throws IOException Handles getKey().
      */
     public Connection(String urlString) throws IOException {
-        setKey();
-        createConnection(urlString);
+        uri = URI.create(urlString + getKey());
     }
 
     /*******************************************************************************************************************
      * Private Methods
      ******************************************************************************************************************/
     /**
-     * Establishes a connection to the server by creating a URL from the URL path provided using an HTTPS connection.
-     * Uses 'GET' request method for requesting data.
-     * @param urlString Specifies the path to the API server.
-     * @throws IOException Handles URL(), openConnection() and setRequestMethod().
+     * Returns the API key, reading it from APIKey.json on first use.
+     * @return Returns the API key.
+     * @throws IOException Handles JsonResponses.readString().
+     */
+    private static String getKey() throws IOException {
+        String key = API_KEY;
+        if (key == null) {
+            synchronized (Connection.class) {
+                key = API_KEY;
+                if (key == null) {
+                    InputStream inputStream = ClassLoader.getSystemClassLoader().getResourceAsStream("Resources/JSON/APIKey.json");
+                    if (inputStream == null) {
+                        throw new IOException("Resources/JSON/APIKey.json not found.");
+                    }
+                    try (inputStream) {
+                        key = JsonResponses.readString(inputStream, "API_Key");
+                    }
+                    if (key == null) {
+                        throw new IOException("Resources/JSON/APIKey.json has no 'API_Key'.");
+                    }
+                    API_KEY = key;
+                }
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the cache of the responses. The default cache is opened by the first request, so that merely loading the
+     * class does not create the cache directory.
+     * @return Returns the cache, or null if every request is sent to the server.
+     */
+    private static HttpCache getCache() {
+        if (!cacheOpened) {
+            synchronized (Connection.class) {
+                if (!cacheOpened) {
+                    cache = HttpCache.openDefault();
+                    cacheOpened = true;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Creates a 'GET' request for the URL that accepts gzip encoded responses and revalidates a cached response.
+     * @param cachedEntry The cached response of the URL, or null if there is none.
+     * @return Returns the request.
+     */
+    private HttpRequest createRequest(HttpCache.Entry cachedEntry) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(READ_TIMEOUT)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (cachedEntry != null && !cachedEntry.getEtag().isEmpty()) {
+            builder.header("If-None-Match", cachedEntry.getEtag());
+        }
+        if (cachedEntry != null && !cachedEntry.getLastModified().isEmpty()) {
+            builder.header("If-Modified-Since", cachedEntry.getLastModified());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the body of a response, decoded if it is gzip encoded.
+     * @param httpResponse The response.
+     * @return Returns the decoded body.
+     * @throws IOException Handles GZIPInputStream().
+     */
+    private static byte[] decode(HttpResponse<byte[]> httpResponse) throws IOException {
+        String encoding = httpResponse.headers().firstValue("Content-Encoding").orElse("");
+        if (!encoding.equalsIgnoreCase("gzip")) {
+            return httpResponse.body();
+        }
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(httpResponse.body()))) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    /**
+     * Looks up the cached response of the URL. A fresh one becomes the response of this connection.
+     * @return Returns true if the cached response is fresh and no request has to be sent.
+     */
+    private synchronized boolean lookUp() {
+        HttpCache httpCache = getCache();
+        cached = httpCache == null ? null : httpCache.get(uri);
+        if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+            httpCache.recordHit();
+            sent = true;
+            responseCode = 200;
+            content = new ByteArrayInputStream(cached.getBody());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Makes a received response the response of this connection. A 200 is stored in the cache, and a 304 answering a
+     * revalidation is replaced by the cached response. A response that cannot be stored in the cache is still used.
+     * @param httpResponse The response.
+     * @throws IOException Handles decode().
      */
-    private void createConnection(String urlString) throws IOException {
-        URL url = new URL(urlString+API_KEY);
-        connection = (HttpsURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
+    private synchronized void receive(HttpResponse<byte[]> httpResponse) throws IOException {
+        sent = true;
+        HttpCache httpCache = getCache();
+        if (httpResponse.statusCode() == 304 && cached != null && httpCache != null) {
+            responseCode = 200;
+            content = new ByteArrayInputStream(cached.getBody());
+            try {
+                httpCache.update(uri, cached, httpResponse.headers());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        byte[] body = decode(httpResponse);
+        if (httpResponse.statusCode() == 200 && httpCache != null) {
+            try {
+                httpCache.put(uri, httpResponse.headers(), body);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        responseCode = httpResponse.statusCode();
+        content = new ByteArrayInputStream(body);
     }
 
     /**
-     * Reads the API key from APIKey.json and stores it in the API_Key instance variable.
-     * @throws IOException Handles readTree().
+     * Sends the request if it has not been sent yet and no fresh response is cached.
+     * @return Returns true if there is a response, false if the server could not be reached.
+     * @throws IOException Thrown if the thread is interrupted while waiting for the response.
      */
-    private void setKey() throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        InputStream inputStream = ClassLoader.getSystemClassLoader().getResourceAsStream("Resources/JSON/APIKey.json");
-        JsonNode APIKeyJSON = mapper.readTree(inputStream);
-        API_KEY = APIKeyJSON.get("API_Key").textValue();
+    private synchronized boolean send() throws IOException {
+        if (!sent && !lookUp()) {
+            sent = true;
+            HttpRequest request = createRequest(cached);
+            long start = Metrics.startTime();
+            try {
+                HttpResponse<byte[]> httpResponse = CLIENT.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                REQUEST_LATENCY.recordSince(start);
+                if (httpResponse.statusCode() != 200 && httpResponse.statusCode() != 304) {
+                    REQUEST_ERRORS.increment();
+                }
+                receive(httpResponse);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + uri.getPath());
+            }
+            catch (IOException e) {
+                REQUEST_ERRORS.increment();
+                return false;
+            }
+        }
+        return content != null;
     }
 
     /*******************************************************************************************************************
      * Public methods
      *******************************************************************************************************************/
     /**
-     * Returns the connection object.
-     * @return Returns the HttpsURLConnection object.
+     * Closes the response body.
+     * @throws IOException Handles close().
      */
-    public HttpsURLConnection getConnection() {
-        return connection;
+    @Override
+    public synchronized void close() throws IOException {
+        if (content != null) {
+            content.close();
+        }
+    }
+
+    /**
+     * Installs the cache of the responses used by the connections created afterwards.
+     * @param httpCache The cache, or null to send every request to the server.
+     */
+    public static void setCache(HttpCache httpCache) {
+        synchronized (Connection.class) {
+            cache = httpCache;
+            cacheOpened = true;
+        }
+    }
+
+    /**
+     * Returns the body of the response. The request is sent if it has not been sent yet.
+     * @return Returns the response body, or null if the server could not be reached.
+     * @throws IOException Handles send().
+     */
+    public synchronized InputStream getContent() throws IOException {
+        return send() ? content : null;
+    }
+
+    /**
+     * Returns the HTTP status code of the response. The request is sent if it has not been sent yet.
+     * @return Returns the status code, 200 for a cached response, or -1 if the server could not be reached or did not
+     * answer in time.
+     * @throws IOException Handles send().
+     */
+    public synchronized int getResponseCode() throws IOException {
+        return send() ? responseCode : -1;
     }
-}
 
+    /**
+     * Sends the request without blocking the calling thread, unless a fresh response is cached.
+     * @return Returns a future completed with this connection once the response has been received.
+     */
+    public CompletableFuture<Connection> sendAsync() {
+        if (lookUp()) {
+            return CompletableFuture.completedFuture(this);
+        }
+        HttpRequest request;
+        synchronized (this) {
+            request = createRequest(cached);
+        }
+        long start = Metrics.startTime();
+        return CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((httpResponse, throwable) -> {
+                    REQUEST_LATENCY.recordSince(start);
+                    if (throwable != null || (httpResponse.statusCode() != 200 && httpResponse.statusCode() != 304)) {
+                        REQUEST_ERRORS.increment();
+                    }
+                })
+                .thenApply(httpResponse -> {
+                    try {
+                        receive(httpResponse);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return this;
+                });
+    }
+}
@@ -0,0 +1,157 @@
+package Code;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Currency;
+
+/**
+ * This class is the headless conversion API of the application.
+ * It converts amounts between currencies identified by their three character codes and has no dependency on JavaFX,
+ * so it can be used by back end services as well as by the user interface.
+ * The rates are looked up through Currencies.getRate(), i.e. from the installed rate matrix or the rate cache,
+ * and the amounts are converted and rounded by Currencies.convert().
+ * A ConversionEngine holds no mutable state and is safe to share between threads.
+ */
+public class ConversionEngine {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currencies currencies;
+    private final CurrencyRegistry registry;
+
+    /**
+     * Default constructor.
+     * @throws IOException Handles the Currencies constructor.
+     */
+    public ConversionEngine() throws IOException {
+        this(new Currencies());
+    }
+
+    /**
+     * Parameterized constructor.
+     * @param currencies The currencies used to look up rates and perform the conversions.
+     */
+    public ConversionEngine(Currencies currencies) {
+        this.currencies = currencies;
+        this.registry = currencies.getRegistry();
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the Currency object of a supported currency code.
+     * @param code The three character currency code.
+     * @return Returns the Currency object.
+     * @throws IllegalArgumentException Thrown if the currency is not supported.
+     */
+    private Currency toCurrency(String code) {
+        int ordinal = registry.getOrdinal(code);
+        if (ordinal == -1) {
+            throw new IllegalArgumentException("Unsupported currency: " + code);
+        }
+        return registry.getCurrency(ordinal);
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Converts an amount from the base currency to the target currency.
+     * @param fromCode The three character code of the base currency.
+     * @param toCode The three character code of the target currency.
+     * @param amount The amount to be converted.
+     * @return Returns the converted amount.
+     * @throws IOException Handles getRate().
+     */
+    public BigDecimal convert(String fromCode, String toCode, BigInteger amount) throws IOException {
+        return currencies.convert(amount, getRate(fromCode, toCode));
+    }
+
+    /**
+     * Converts an amount from the base currency to the target currency at the rate of a point in the past.
+     * @param fromCode The three character code of the base currency.
+     * @param toCode The three character code of the target currency.
+     * @param amount The amount to be converted.
+     * @param timestamp The time of the rate, in milliseconds since the epoch.
+     * @return Returns the converted amount.
+     * @throws IOException Handles getRate().
+     */
+    public BigDecimal convert(String fromCode, String toCode, BigDecimal amount, long timestamp) throws IOException {
+        return currencies.convert(amount, getRate(fromCode, toCode, timestamp));
+    }
+
+    /**
+     * Converts many amounts from the base currency to the target currency. The rate is looked up once.
+     * @param fromCode The three character code of the base currency.
+     * @param toCode The three character code of the target currency.
+     * @param amounts The amounts to be converted.
+     * @return Returns the converted amounts, in the order of the given amounts.
+     * @throws IOException Handles getRate().
+     */
+    public BigDecimal[] convert(String fromCode, String toCode, BigInteger[] amounts) throws IOException {
+        double conversionRate = getRate(fromCode, toCode);
+        BigDecimal[] finalAmounts = new BigDecimal[amounts.length];
+        for (int i = 0; i < amounts.length; i++) {
+            finalAmounts[i] = currencies.convert(amounts[i], conversionRate);
+        }
+        return finalAmounts;
+    }
+
+    /**
+     * Converts a column of amounts from the base currency to the target currency with BulkConverter.
+     * The converted amounts are not rounded.
+     * @param fromCode The three character code of the base currency.
+     * @param toCode The three character code of the target currency.
+     * @param amounts The amounts to be converted.
+     * @param out The array the converted amounts are written to, at least as long as amounts.
+     * @throws IOException Handles getRate().
+     */
+    public void convert(String fromCode, String toCode, double[] amounts, double[] out) throws IOException {
+        BulkConverter.convert(amounts, getRate(fromCode, toCode), out);
+    }
+
+    /**
+     * Returns the conversion rate from the base currency to the target currency.
+     * @param fromCode The three character code of the base currency.
+     * @param toCode The three character code of the target currency.
+     * @return Returns the conversion rate.
+     * @throws IOException Thrown if the rate cannot be obtained.
+     * @throws IllegalArgumentException Thrown if either currency is not supported.
+     */
+    public double getRate(String fromCode, String toCode) throws IOException {
+        Currency fromCurrency = toCurrency(fromCode);
+        Currency toCurrency = toCurrency(toCode);
+        double conversionRate = currencies.getRate(fromCurrency, toCurrency);
+        if (conversionRate == -1) {
+            throw new IOException("Unable to obtain the conversion rate from " + fromCode + " to " + toCode);
+        }
+        return conversionRate;
+    }
+
+    /**
+     * Returns the conversion rate from the base currency to the target currency at a point in the past.
+     * @param fromCode The three character code of the base currency.
+     * @param toCode The three character code of the target currency.
+     * @param timestamp The time of the rate, in milliseconds since the epoch.
+     * @return Returns the last conversion rate recorded at or before the given time.
+     * @throws IOException Thrown if the rate history has no such rate.
+     * @throws IllegalArgumentException Thrown if either currency is not supported.
+     */
+    public double getRate(String fromCode, String toCode, long timestamp) throws IOException {
+        double conversionRate = currencies.getRate(toCurrency(fromCode), toCurrency(toCode), timestamp);
+        if (conversionRate == -1) {
+            throw new IOException("No recorded conversion rate from " + fromCode + " to " + toCode + " at " + timestamp);
+        }
+        return conversionRate;
+    }
+
+    /**
+     * @return Returns the registry of the currencies supported by the engine.
+     */
+    public CurrencyRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,107 @@
+package Code;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * This class measures the latency and the heap allocation of a conversion.
+ * It is used to verify the per keystroke cost of the conversion in the user interface.
+ * Profiling is enabled by starting the application with '-Dcurrency.profile=true'.
+ * When enabled, the cost of every conversion and the running average is printed to the console.
+ */
+public class ConversionProfiler {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final boolean ENABLED = Boolean.getBoolean("currency.profile");
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final String label;
+    private long samples;
+    private long totalNanos;
+    private long totalBytes;
+    private final ThreadLocal<long[]> starts;
+
+    /**
+     * Parameterized constructor.
+     * @param label The name of the measured operation, printed with every sample.
+     */
+    public ConversionProfiler(String label) {
+        this.label = label;
+        this.starts = ThreadLocal.withInitial(() -> new long[2]);
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            threadBean = (com.sun.management.ThreadMXBean) bean;
+        }
+        else {
+            threadBean = null;
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     * @return Returns the allocated bytes or 0 if the JVM does not support allocation counting.
+     */
+    private long allocatedBytes() {
+        if (threadBean == null) {
+            return 0;
+        }
+        return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Adds a sample to the totals and prints it.
+     * @param nanos The latency of the operation in nanoseconds.
+     * @param bytes The bytes allocated by the operation.
+     */
+    private synchronized void record(long nanos, long bytes) {
+        samples++;
+        totalNanos += nanos;
+        totalBytes += bytes;
+        System.out.printf("%s: %.1f us, %d bytes (average %.1f us, %d bytes over %d samples)%n",
+                label, nanos / 1000.0, bytes, totalNanos / 1000.0 / samples, totalBytes / samples, samples);
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Marks the start of a measured operation.
+     * Must be followed by stop() on the same thread. Operations may be measured on several threads at once.
+     */
+    public void start() {
+        if (!ENABLED) {
+            return;
+        }
+        long[] start = starts.get();
+        start[1] = allocatedBytes();
+        start[0] = System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a measured operation and prints its cost.
+     */
+    public void stop() {
+        if (!ENABLED) {
+            return;
+        }
+        long[] start = starts.get();
+        long nanos = System.nanoTime() - start[0];
+        long bytes = allocatedBytes() - start[1];
+        record(nanos, bytes);
+    }
+
+    /**
+     * @return Returns true if profiling has been enabled with the 'currency.profile' system property.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+}
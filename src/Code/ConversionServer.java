@@ -0,0 +1,392 @@
+package Code;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is an independent class in the application.
+ * It serves conversions over HTTP, so that other services can convert amounts without running the user interface.
+ * Usage:
+ * <pre>
+ *     ConversionServer [--host=127.0.0.1] [--port=8080]
+ * </pre>
+ * Endpoints:
+ * <pre>
+ *     GET  /convert?from=USD&amp;to=EUR&amp;amount=12.50
+ *          {"from":"USD","to":"EUR","amount":12.50,"rate":0.91,"converted":11.37,"asOf":1600000000000}
+ *     POST /convert/bulk   [{"amount":"12.50","from":"USD","to":"EUR"}, ...]
+ *          {"asOf":1600000000000,"results":[{"from":"USD",...}, {"error":"Unsupported currency: XYZ"}, ...]}
+ * </pre>
+ * Every request is answered from the rate matrix installed in Currencies, so a request never waits for the API
+ * server. The matrix is loaded from the rate snapshot file at start and refreshed in the background by RateRefresher.
+ * Until the first rates are available, requests are answered with status 503.
+ * Request bodies are parsed with the streaming JsonParser and responses are written by hand, so no JSON tree is built.
+ * Every request runs on its own virtual thread if the JVM supports them, otherwise on a cached thread pool.
+ */
+public class ConversionServer {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int MAX_BODY_BYTES = Integer.getInteger("currency.server.maxBodyBytes", 1 << 20);
+    private static final int MAX_DIGITS = 40;
+    private static final Metrics.Latency REQUEST_LATENCY = Metrics.latency("server.request");
+    private static final Metrics.Counter REQUEST_ERRORS = Metrics.counter("server.errors");
+
+    static {
+        // Without TCP_NODELAY the response body waits for the delayed ACK of the headers, about 40 ms per request.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currencies currencies;
+    private final CurrencyRegistry registry;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Parameterized constructor.
+     * Binds the server to the address. The server does not accept requests before start() is called.
+     * @param currencies The currencies used to convert the amounts.
+     * @param address The address to listen on. Port 0 picks a free port.
+     * @throws IOException Thrown if the address cannot be bound.
+     */
+    public ConversionServer(Currencies currencies, InetSocketAddress address) throws IOException {
+        this.currencies = currencies;
+        this.registry = currencies.getRegistry();
+        this.executor = createExecutor();
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/convert", this::handleConvert);
+        server.createContext("/convert/bulk", this::handleBulkConvert);
+        server.setExecutor(executor);
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Creates the executor that runs the requests.
+     * Executors.newVirtualThreadPerTaskExecutor() is looked up reflectively, so the server also runs on JVMs without
+     * virtual threads, where a cached pool of daemon threads is used instead.
+     * @return Returns the executor.
+     */
+    private static ExecutorService createExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "conversion-server-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Decodes a URL encoded query parameter.
+     * @param value The raw value.
+     * @return Returns the decoded value.
+     */
+    private static String decode(String value) {
+        return URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends a JSON response and closes the exchange.
+     * @param exchange The exchange.
+     * @param status The HTTP status code.
+     * @param body The JSON document.
+     * @throws IOException Handles the HttpExchange methods.
+     */
+    private static void send(HttpExchange exchange, int status, CharSequence body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    /**
+     * Sends an error response, i.e. an object with an 'error' field.
+     * @param exchange The exchange.
+     * @param status The HTTP status code.
+     * @param message The error message.
+     * @throws IOException Handles send().
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        REQUEST_ERRORS.increment();
+        StringBuilder body = new StringBuilder("{\"error\":");
+        JsonResponses.appendString(body, message);
+        send(exchange, status, body.append('}'));
+    }
+
+    /**
+     * Converts an amount and appends the result to a JSON document.
+     * @param output The JSON document. Nothing is appended if the conversion is rejected.
+     * @param matrix The rates used for the conversion.
+     * @param amountText The amount.
+     * @param from The code of the base currency.
+     * @param to The code of the target currency.
+     * @return Returns an error message, or null if the result has been appended.
+     */
+    private String appendConversion(StringBuilder output, RateMatrix matrix, String amountText, String from, String to) {
+        if (amountText == null || from == null || to == null) {
+            return "Expected amount, from and to";
+        }
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(amountText.trim());
+        } catch (NumberFormatException e) {
+            return "Invalid amount: " + amountText;
+        }
+        if (amount.signum() < 0 || amount.scale() > MAX_DIGITS || amount.precision() - amount.scale() > MAX_DIGITS) {
+            return "Invalid amount: " + amountText;
+        }
+        int fromOrdinal = registry.getOrdinal(from.toUpperCase());
+        if (fromOrdinal == -1) {
+            return "Unsupported currency: " + from;
+        }
+        int toOrdinal = registry.getOrdinal(to.toUpperCase());
+        if (toOrdinal == -1) {
+            return "Unsupported currency: " + to;
+        }
+        double conversionRate = matrix.getRate(fromOrdinal, toOrdinal);
+        if (conversionRate == -1) {
+            return "No rate from " + registry.getCode(fromOrdinal) + " to " + registry.getCode(toOrdinal);
+        }
+        BigDecimal converted = currencies.convert(amount, conversionRate);
+        output.append("{\"from\":\"").append(registry.getCode(fromOrdinal))
+                .append("\",\"to\":\"").append(registry.getCode(toOrdinal))
+                .append("\",\"amount\":").append(amount.toPlainString())
+                .append(",\"rate\":").append(conversionRate)
+                .append(",\"converted\":").append(converted.toPlainString());
+        return null;
+    }
+
+    /**
+     * Answers 'GET /convert?from=&amp;to=&amp;amount='.
+     * @param exchange The exchange.
+     * @throws IOException Handles the HttpExchange methods.
+     */
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        long start = Metrics.startTime();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use GET");
+                return;
+            }
+            if (!"/convert".equals(exchange.getRequestURI().getPath())) {
+                sendError(exchange, 404, "Not found");
+                return;
+            }
+            RateMatrix matrix = Currencies.getRateMatrix();
+            if (matrix == null) {
+                sendError(exchange, 503, "Rates are not available yet");
+                return;
+            }
+            String amount = null;
+            String from = null;
+            String to = null;
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query != null) {
+                for (String parameter : query.split("&")) {
+                    int equals = parameter.indexOf('=');
+                    String name = equals == -1 ? parameter : parameter.substring(0, equals);
+                    String value = equals == -1 ? "" : decode(parameter.substring(equals + 1));
+                    if ("amount".equals(name)) {
+                        amount = value;
+                    }
+                    else if ("from".equals(name)) {
+                        from = value;
+                    }
+                    else if ("to".equals(name)) {
+                        to = value;
+                    }
+                }
+            }
+            StringBuilder body = new StringBuilder(160);
+            String error = appendConversion(body, matrix, amount, from, to);
+            if (error != null) {
+                sendError(exchange, 400, error);
+                return;
+            }
+            body.append(",\"asOf\":").append(matrix.getTimestamp()).append('}');
+            send(exchange, 200, body);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "Invalid query");
+        } finally {
+            exchange.close();
+            REQUEST_LATENCY.recordSince(start);
+        }
+    }
+
+    /**
+     * Answers 'POST /convert/bulk' with a JSON array of {"amount","from","to"} objects.
+     * Every item gets a result or an error at the same index of the 'results' array.
+     * @param exchange The exchange.
+     * @throws IOException Handles the HttpExchange methods.
+     */
+    private void handleBulkConvert(HttpExchange exchange) throws IOException {
+        long start = Metrics.startTime();
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, 405, "Use POST");
+                return;
+            }
+            RateMatrix matrix = Currencies.getRateMatrix();
+            if (matrix == null) {
+                sendError(exchange, 503, "Rates are not available yet");
+                return;
+            }
+            byte[] bytes = requestBody.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                sendError(exchange, 413, "The request body exceeds " + MAX_BODY_BYTES + " bytes");
+                return;
+            }
+            StringBuilder body = new StringBuilder(64 + bytes.length * 2);
+            body.append("{\"asOf\":").append(matrix.getTimestamp()).append(",\"results\":[");
+            try (JsonParser parser = JsonResponses.FACTORY.createParser(bytes)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    sendError(exchange, 400, "Expected a JSON array");
+                    return;
+                }
+                boolean first = true;
+                JsonToken token;
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        sendError(exchange, 400, "Unexpected end of input");
+                        return;
+                    }
+                    String amount = null;
+                    String from = null;
+                    String to = null;
+                    if (token == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = parser.getCurrentName();
+                            if (parser.nextToken().isStructStart()) {
+                                parser.skipChildren();
+                            }
+                            else if ("amount".equals(name)) {
+                                amount = parser.getText();
+                            }
+                            else if ("from".equals(name)) {
+                                from = parser.getText();
+                            }
+                            else if ("to".equals(name)) {
+                                to = parser.getText();
+                            }
+                        }
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                    if (!first) {
+                        body.append(',');
+                    }
+                    first = false;
+                    String error = appendConversion(body, matrix, amount, from, to);
+                    if (error != null) {
+                        body.append("{\"error\":");
+                        JsonResponses.appendString(body, error);
+                    }
+                    body.append('}');
+                }
+            } catch (JsonProcessingException e) {
+                sendError(exchange, 400, "Invalid JSON: " + e.getOriginalMessage());
+                return;
+            }
+            send(exchange, 200, body.append("]}"));
+        } finally {
+            exchange.close();
+            REQUEST_LATENCY.recordSince(start);
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for the requests in progress and stops the executor.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     * @return Returns the port the server listens on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Installs the rate snapshot and the rate history, starts the background refresh of the rates and starts the server.
+     * @param args The options.
+     * @throws IOException Handles the Currencies constructor, RateSnapshotFile.load(), RateHistoryStore.open() and the
+     * ConversionServer().
+     */
+    public static void main(String[] args) throws IOException {
+        String host = "127.0.0.1";
+        int port = 8080;
+        for (String arg : args) {
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (arg.startsWith("--host=")) {
+                host = value;
+            }
+            else if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(value);
+            }
+            else {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        Currencies currencies = new Currencies();
+        Currencies.setRateMatrix(RateSnapshotFile.load(currencies.getRegistry()));
+        RateHistoryStore rateHistory = RateHistoryStore.open(currencies.getRegistry());
+        Currencies.setRateHistory(rateHistory);
+        RateRefresher rateRefresher = new RateRefresher(currencies);
+        rateRefresher.start();
+        ConversionServer conversionServer = new ConversionServer(currencies, new InetSocketAddress(host, port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            conversionServer.stop();
+            rateRefresher.stop();
+            try {
+                rateHistory.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }));
+        conversionServer.start();
+        System.out.println("Serving conversions on http://" + host + ":" + conversionServer.getPort() + "/convert");
+    }
+}
@@ -0,0 +1,196 @@
+package Code;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.concurrent.Service;
+import javafx.concurrent.Task;
+import javafx.util.Duration;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * This class performs conversions on a background thread so that the JavaFX application thread never waits
+ * for the currency API server.
+ * Input is coalesced before it is converted: a conversion starts only after the input has been quiet for a
+ * configurable period ('currency.input.quietMillis', 150 ms by default), intermediate values are dropped, and at most
+ * one conversion is in flight. Input that arrives while a conversion is running is converted once it completes.
+ * The result is delivered to the 'onSucceeded' handler, and a failure to obtain the conversion rate is delivered
+ * to the 'onFailed' handler. Both handlers run on the JavaFX application thread.
+ */
+public class ConversionService extends Service<BigDecimal> {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final Duration QUIET_PERIOD = Duration.millis(Long.getLong("currency.input.quietMillis", 150));
+    private static final Metrics.Latency CONVERSION_LATENCY = Metrics.latency("conversion.compute");
+    private static final Metrics.Counter CONVERSION_FAILURES = Metrics.counter("conversion.failures");
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currencies currencies;
+    private final ConversionEngine engine;
+    private final ConversionProfiler profiler;
+    private final IncrementalConverter incrementalConverter;
+    private String fromName;
+    private String toName;
+    private String amountText;
+    private final PauseTransition quietTimer;
+    private boolean inputPending;
+    private boolean conversionPending;
+    private volatile long skippedConversions;
+
+    /**
+     * Parameterized constructor.
+     * @param currencies The currencies used to look up rates and perform the conversion.
+     * @param parser The parser of the amounts entered by the user.
+     */
+    public ConversionService(Currencies currencies, AmountParser parser) {
+        this.currencies = currencies;
+        this.incrementalConverter = new IncrementalConverter(parser);
+        this.engine = new ConversionEngine(currencies);
+        this.profiler = new ConversionProfiler("Conversion");
+        this.quietTimer = new PauseTransition(QUIET_PERIOD);
+        this.quietTimer.setOnFinished(event -> startConversion());
+        Metrics.gauge("conversion.skipped", this::getSkippedConversions);
+        Metrics.gauge("conversion.incremental", incrementalConverter::getIncrementalUpdates);
+        Metrics.gauge("conversion.full", incrementalConverter::getFullConversions);
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Computes the user provided amount to the target currency.
+     * The currency names are resolved to their codes and the rate is looked up by the ConversionEngine. The amount is
+     * converted by the IncrementalConverter, which updates the result of the previous conversion when only the end of
+     * the amount changed.
+     * @param fromName The name of the base currency.
+     * @param toName The name of the target currency.
+     * @param amountText The amount entered by the user, with the separators of the locale.
+     * @return The converted amount of the target currency, or null if the amount has no digits.
+     * @throws IOException Thrown if the conversion rate cannot be obtained.
+     */
+    private BigDecimal computeConversion(String fromName, String toName, String amountText) throws IOException {
+        long start = Metrics.startTime();
+        String fromCode = currencies.getNameToId(fromName);
+        String toCode = currencies.getNameToId(toName);
+        BigDecimal finalAmount = incrementalConverter.convert(amountText, engine.getRate(fromCode, toCode));
+        CONVERSION_LATENCY.recordSince(start);
+        return finalAmount;
+    }
+
+    /**
+     * Starts converting the latest input unless a conversion is already in flight.
+     * If one is in flight, the latest input is converted once it completes.
+     */
+    private void startConversion() {
+        if (isRunning()) {
+            conversionPending = true;
+            return;
+        }
+        inputPending = false;
+        conversionPending = false;
+        restart();
+    }
+
+    /*******************************************************************************************************************
+     * Protected Methods
+     ******************************************************************************************************************/
+    /**
+     * Creates the task performing the latest requested conversion.
+     * Invoked on the JavaFX application thread, so the input is captured here and not read by the task.
+     * @return Returns the conversion task.
+     */
+    @Override
+    protected Task<BigDecimal> createTask() {
+        String from = fromName;
+        String to = toName;
+        String amount = amountText;
+        return new Task<>() {
+            @Override
+            protected BigDecimal call() throws IOException {
+                profiler.start();
+                BigDecimal finalAmount = computeConversion(from, to, amount);
+                profiler.stop();
+                return finalAmount;
+            }
+        };
+    }
+
+    /**
+     * Starts the conversion of input that arrived while the previous conversion was in flight.
+     */
+    @Override
+    protected void succeeded() {
+        super.succeeded();
+        if (conversionPending) {
+            Platform.runLater(this::startConversion);
+        }
+    }
+
+    /**
+     * Counts the failure and starts the conversion of input that arrived while the previous conversion was in flight.
+     */
+    @Override
+    protected void failed() {
+        super.failed();
+        CONVERSION_FAILURES.increment();
+        if (conversionPending) {
+            Platform.runLater(this::startConversion);
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Schedules the conversion of the amount once the input has been quiet for the quiet period.
+     * Input that has not been converted yet is replaced and counted as a skipped conversion.
+     * Must be called on the JavaFX application thread.
+     * @param fromName The name of the base currency.
+     * @param toName The name of the target currency.
+     * @param amountText The amount entered by the user.
+     */
+    public void convert(String fromName, String toName, String amountText) {
+        if (inputPending) {
+            skippedConversions++;
+        }
+        this.fromName = fromName;
+        this.toName = toName;
+        this.amountText = amountText;
+        inputPending = true;
+        quietTimer.playFromStart();
+    }
+
+    /**
+     * Drops the input that has not been converted yet and cancels the conversion in flight.
+     * Must be called on the JavaFX application thread.
+     */
+    public void discard() {
+        quietTimer.stop();
+        if (inputPending) {
+            skippedConversions++;
+        }
+        inputPending = false;
+        conversionPending = false;
+        cancel();
+    }
+
+    /**
+     * Returns true if input has arrived that is newer than the conversion in flight or just completed.
+     * The result of such a conversion is stale and should not be rendered.
+     * @return Returns true if there is input waiting to be converted.
+     */
+    public boolean hasPendingInput() {
+        return inputPending || conversionPending;
+    }
+
+    /**
+     * @return Returns the number of inputs that were replaced or discarded before they were converted.
+     */
+    public long getSkippedConversions() {
+        return skippedConversions;
+    }
+}
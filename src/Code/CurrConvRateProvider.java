@@ -0,0 +1,131 @@
+package Code;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the rate provider of the currconv API, 'https://free.currconv.com/api/v7' by default.
+ * Rates are requested with the 'convert' endpoint in 'compact=ultra' form, packing as many pairs into one request as
+ * the per request limit of the API allows ('currency.api.maxPairsPerRequest'), and the currency metadata is requested
+ * with the 'currencies' endpoint. The paid plans of the API are served by other hosts with the same endpoints, so a
+ * provider can be created for any of them.
+ */
+public class CurrConvRateProvider implements RateProvider {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    public static final String DEFAULT_BASE_URL = "https://free.currconv.com/api/v7";
+    private static final int MAX_PAIRS_PER_REQUEST = Integer.getInteger("currency.api.maxPairsPerRequest", 2);
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final String baseUrl;
+
+    /**
+     * Default Constructor.
+     * Creates a provider for the free currconv API.
+     */
+    public CurrConvRateProvider() {
+        this(DEFAULT_BASE_URL);
+    }
+
+    /**
+     * Parameterized constructor.
+     * @param baseUrl The URL of the API, without the endpoint, e.g. 'https://free.currconv.com/api/v7'.
+     */
+    public CurrConvRateProvider(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Fetches the conversion rates of up to MAX_PAIRS_PER_REQUEST currency pairs with a single request.
+     * The pairs are sent comma separated in the 'q' parameter and the 'compact=ultra' response is parsed as a
+     * JSON object mapping every 'FROM_TO' key to its rate. Pairs missing from the response are left out of 'rates'.
+     * Error statuses and error payloads are reported by JsonResponses and make the request fail.
+     * @param pairs The currency pairs, at most MAX_PAIRS_PER_REQUEST of them.
+     * @param rates The map the fetched rates are stored in.
+     * @return Returns false if some error occurs during connection establishment.
+     * @throws IOException Handles the Connection(), JsonResponses.checkResponse(), getContent() and parseRates().
+     */
+    private boolean fetchBatch(List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates) throws IOException {
+        StringBuilder query = new StringBuilder(baseUrl).append("/convert?q=");
+        for (int i = 0; i < pairs.size(); i++) {
+            if (i > 0) {
+                query.append(',');
+            }
+            query.append(pairs.get(i).getKey());
+        }
+        query.append("&compact=ultra&apiKey=");
+        try (Connection connection = new Connection(query.toString())) {
+            if (!JsonResponses.checkResponse(connection, "Rate request")) {
+                return false;
+            }
+            return Currencies.parseRates(connection.getContent(), pairs, rates);
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * @return Returns the host of the API.
+     */
+    @Override
+    public String getName() {
+        int start = baseUrl.indexOf("://");
+        int end = baseUrl.indexOf('/', start + 3);
+        return baseUrl.substring(start == -1 ? 0 : start + 3, end == -1 ? baseUrl.length() : end);
+    }
+
+    /**
+     * Fetches the conversion rates of any number of currency pairs, MAX_PAIRS_PER_REQUEST pairs per request.
+     * Fetching stops at the first request that fails.
+     * @param pairs The currency pairs.
+     * @param rates The map the fetched rates are stored in.
+     * @return Returns false if some error occurs during connection establishment.
+     * @throws IOException Handles fetchBatch().
+     */
+    @Override
+    public boolean fetchRates(List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates) throws IOException {
+        for (int start = 0; start < pairs.size(); start += MAX_PAIRS_PER_REQUEST) {
+            List<CurrencyPair> batch = pairs.subList(start, Math.min(start + MAX_PAIRS_PER_REQUEST, pairs.size()));
+            Map<CurrencyPair, Double> fetched = new HashMap<>();
+            if (!fetchBatch(batch, fetched)) {
+                return false;
+            }
+            rates.putAll(fetched);
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns the per request limit of pairs of the API, 'currency.api.maxPairsPerRequest'.
+     */
+    @Override
+    public int getMaxPairsPerRequest() {
+        return MAX_PAIRS_PER_REQUEST;
+    }
+
+    /**
+     * Fetches the currency metadata. The 'results' object of the response is parsed in a single pass by
+     * JsonResponses.readObjects().
+     * @return Returns the fields of every currency by currency code, or null if the server answered with an error.
+     * @throws IOException Handles the Connection(), JsonResponses.checkResponse() and JsonResponses.readObjects().
+     */
+    @Override
+    public Map<String, Map<String, String>> fetchCurrencies() throws IOException {
+        try (Connection connection = new Connection(baseUrl + "/currencies?apiKey=")) {
+            if (!JsonResponses.checkResponse(connection, "Currency request")) {
+                return null;
+            }
+            return JsonResponses.readObjects(connection.getContent(), "results");
+        }
+    }
+}
@@ -1,8 +1,5 @@
 package Code;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -11,136 +8,217 @@ import java.util.*;
 import java.util.regex.*;
 
 /**
- * This class contains data structures to store currencies and methods to manipulate them.
- * The currencies are loaded from the currencies.json file.
+ * This class contains methods to look up and convert currencies.
+ * The currency data is read from the shared CurrencyRegistry, which loads the currencies.json file once per JVM.
  */
 public class Currencies {
 
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final RateCache RATE_CACHE = new RateCache();
+    private static final Pattern ROUNDING_PATTERN = Pattern.compile("(.*\\.0*...).*");
+    private static final Metrics.Latency RATE_LATENCY = Metrics.latency("rates.getRate");
+    private static final Metrics.Counter RATE_FAILURES = Metrics.counter("rates.failures");
+    private static final Metrics.Latency CONVERT_LATENCY = Metrics.latency("convert");
+    private static final Metrics.Counter CONVERT_FALLBACKS = Metrics.counter("convert.bigDecimal");
+    private static volatile RateProvider rateProvider = createDefaultProvider();
+    private static volatile RateMatrix rateMatrix;
+    private static volatile RateHistoryStore rateHistory;
+    private static volatile long ratesAsOf = -1;
+
+    static {
+        Metrics.gauge("rates.cache.hits", RATE_CACHE::getHits);
+        Metrics.gauge("rates.cache.misses", RATE_CACHE::getMisses);
+        Metrics.gauge("rates.cache.evictions", RATE_CACHE::getEvictions);
+    }
+
     /*******************************************************************************************************************
      * Instance Variables.
      ******************************************************************************************************************/
-    private Map<String, JsonNode> currencies;
-    private List<String> currencyIds;
-    private List<String> currencyNames;
-    private Map<String, String> namesToId;
+    private final CurrencyRegistry registry;
 
     /**
      * Default Constructor.
-     * Creates and initializes data structure instances.
-     * @throws IOException Handles loadCurrencies().
+     * Obtains the shared currency registry. No currency data is parsed after the first call.
+     * @throws IOException Handles CurrencyRegistry.getInstance().
      */
     public Currencies()throws IOException{
-        currencyIds = new ArrayList<>();
-        currencyNames = new ArrayList<>();
-        namesToId = new HashMap<>();
-        loadCurrencies();
-        loadCurrencyIds();
-        loadCurrencyNames();
-        loadNamesToId();
+        registry = CurrencyRegistry.getInstance();
     }
 
     /*******************************************************************************************************************
      * Private Methods
      ******************************************************************************************************************/
     /**
-     * Computes the currencies that are not supported by either the API or Java's Currency class.
-     * Creates a set of API supported currencies and a set of 'Currency' class currencies.
-     * Computes the currencies that are not present in the intersection of the two sets mentioned above.
-     * @return Currencies not present in the intersection of the Currency class set and API currency set.
+     * Fetches the conversion rate of a single currency pair from the installed rate provider.
+     * Returns -1 if some error occurs during connection establishment.
+     * @param pair The currency pair.
+     * @return Returns the conversion rate.
+     * @throws IOException Handles RateProvider.fetchRates().
      */
-    private Set<String> computeSkipCurrencies() {
-        Set<String> javaCurrencies = new HashSet<>();
-        Set<Currency> inbuiltCurrency = Currency.getAvailableCurrencies();
-        for(Currency item : inbuiltCurrency) {
-            javaCurrencies.add(item.toString());
+    private static double fetchRate(CurrencyPair pair) throws IOException {
+        Map<CurrencyPair, Double> rates = new HashMap<>();
+        rateProvider.fetchRates(Collections.singletonList(pair), rates);
+        Double rate = rates.get(pair);
+        return rate == null ? -1 : rate;
+    }
+
+    /**
+     * Fetches the conversion rates of any number of currency pairs from the installed rate provider.
+     * The fetched rates are stored in the shared rate cache, including those of a request that failed part way.
+     * @param pairs The currency pairs.
+     * @param rates The map the fetched rates are stored in.
+     * @return Returns false if some error occurs during connection establishment.
+     * @throws IOException Handles RateProvider.fetchRates().
+     */
+    private static boolean fetchAllRates(List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates) throws IOException {
+        if (pairs.isEmpty()) {
+            return true;
+        }
+        Map<CurrencyPair, Double> fetched = new HashMap<>();
+        boolean complete = rateProvider.fetchRates(pairs, fetched);
+        for (Map.Entry<CurrencyPair, Double> entry : fetched.entrySet()) {
+            RATE_CACHE.put(entry.getKey(), entry.getValue());
         }
-        Set<String> apiCurrencies = new HashSet<String>(this.currencies.keySet());
-        Set<String> commonCurrencies = new HashSet<>(javaCurrencies);
-        commonCurrencies.retainAll(apiCurrencies);
-        Set<String> finalCurrencies = apiCurrencies;
-        finalCurrencies.removeAll(commonCurrencies);
-        return finalCurrencies;
+        rates.putAll(fetched);
+        return complete;
     }
 
     /**
-     * Rounds decimal numbers to two decimal places by using HALF_UP strategy.
-     * In case of numbers such as 123.0000000023456, the method formats such numbers to 123.0000000023.
-     * @param number Number to be rounded to two decimal places.
-     * @return Returns a rounded number to two decimal places.
+     * Creates the rate provider configured with the 'currency.api.baseUrls' system property, a comma separated list
+     * of currconv API URLs. Several URLs are combined by a HedgedRateProvider, in the given order of preference.
+     * @return Returns the rate provider, by default the one of the free currconv API.
      */
-    private BigDecimal round(BigDecimal number) {
-        String patternString = "(.*\\.0*...).*";
-        String numberString = number.toString();
-        Pattern pattern = Pattern.compile(patternString);
-        Matcher match = pattern.matcher(numberString);
-        if (match.matches()) {
-            BigDecimal finalAmount = new BigDecimal(match.group(1));
-            int n = finalAmount.scale();
-            if(n > 2) {
-                finalAmount = finalAmount.stripTrailingZeros();
-            }
-            if(n > 2) {
-                finalAmount = finalAmount.setScale(n - 1, RoundingMode.HALF_UP);
+    private static RateProvider createDefaultProvider() {
+        String[] baseUrls = System.getProperty("currency.api.baseUrls", CurrConvRateProvider.DEFAULT_BASE_URL).split(",");
+        List<RateProvider> providers = new ArrayList<>();
+        for (String baseUrl : baseUrls) {
+            if (!baseUrl.isBlank()) {
+                providers.add(new CurrConvRateProvider(baseUrl.strip()));
             }
-            return finalAmount;
         }
-        return number;
+        if (providers.isEmpty()) {
+            return new CurrConvRateProvider();
+        }
+        return providers.size() == 1 ? providers.get(0) : new HedgedRateProvider(providers);
     }
 
     /**
-     * Populates the 'currencies'(Map< String, JsonNode>) data structure with currency data from the 'currencies.json' file.
-     * @throws IOException Handles readValue().
+     * Creates the pairs from the pivot currency to every supported currency, in the order of their ordinals.
+     * @param pivotCode The three character code of the pivot currency.
+     * @return Returns the list of pairs.
      */
-    private void loadCurrencies() throws IOException{
-        ObjectMapper mapper = new ObjectMapper();
-        InputStream inputStream = ClassLoader.getSystemClassLoader().getResourceAsStream("Resources/JSON/currencies.json");
-        currencies = mapper.readValue(inputStream, mapper.getTypeFactory().
-                constructMapLikeType(Map.class, String.class, JsonNode.class));
-        removeSkipCurrencies(computeSkipCurrencies());
+    private List<CurrencyPair> createPivotPairs(String pivotCode) {
+        int pivotOrdinal = registry.getOrdinal(pivotCode);
+        if (pivotOrdinal == -1) {
+            throw new IllegalArgumentException("Unsupported pivot currency: " + pivotCode);
+        }
+        Currency pivot = registry.getCurrency(pivotOrdinal);
+        List<CurrencyPair> pairs = new ArrayList<>(registry.size());
+        for (int i = 0; i < registry.size(); i++) {
+            pairs.add(new CurrencyPair(pivot, registry.getCurrency(i)));
+        }
+        return pairs;
     }
 
     /**
-     * Populates the 'currencyIds' data structure with currency 'id' from the 'currencies' data structure.
+     * Creates a rate matrix from the rates of the pivot pairs.
+     * @param pivotCode The three character code of the pivot currency.
+     * @param pairs The pivot pairs returned by createPivotPairs().
+     * @param rates The rates of the pivot pairs. Pairs without a rate get a rate of -1.
+     * @return Returns the rate matrix.
      */
-    private void loadCurrencyIds() {
-        Collection<JsonNode> currencyObjects= currencies.values();
-        for (JsonNode item : currencyObjects) {
-            currencyIds.add(item.get("id").textValue());
+    private RateMatrix createRateMatrix(String pivotCode, List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates) {
+        int pivotOrdinal = registry.getOrdinal(pivotCode);
+        double[] pivotRates = new double[pairs.size()];
+        for (int i = 0; i < pivotRates.length; i++) {
+            Double rate = rates.get(pairs.get(i));
+            pivotRates[i] = (i == pivotOrdinal) ? 1 : (rate == null ? -1 : rate);
         }
+        return new RateMatrix(pivotOrdinal, pivotRates, System.currentTimeMillis());
     }
 
     /**
-     * Populates the 'currencyNames' data structure with 'currency names' from the 'currencies' data structure.
+     * Converts a whole amount with FixedPointConverter, or with BigDecimal arithmetic if the amount does not fit in a long.
+     * @param amount The amount to be converted to the target currency.
+     * @param conversionRate The conversion rate from the base to target currency.
+     * @return Returns the converted amount.
      */
-    private void loadCurrencyNames() {
-        Collection<JsonNode> currencyObjects = currencies.values();
-        for(JsonNode item : currencyObjects) {
-            currencyNames.add(item.get("currencyName").textValue());
+    private BigDecimal convertWholeAmount(BigInteger amount, double conversionRate) {
+        if (amount.bitLength() < Long.SIZE) {
+            FixedPointConverter.ScaledAmount result = new FixedPointConverter.ScaledAmount();
+            if (FixedPointConverter.convert(amount.longValue(), conversionRate, result)) {
+                return BigDecimal.valueOf(result.getUnscaledValue(), result.getScale());
+            }
         }
-        Collections.sort(currencyNames);
+        CONVERT_FALLBACKS.increment();
+        BigDecimal newAmount = new BigDecimal(amount);
+        BigDecimal finalAmount = newAmount.multiply(new BigDecimal(conversionRate));
+        if(finalAmount.compareTo(BigDecimal.valueOf(0)) == 0) {
+            return BigDecimal.valueOf(0);
+        }
+        finalAmount = round(finalAmount);
+        return finalAmount;
     }
 
     /**
-     * Creates a mapping from currency names to their corresponding 3 character code.
-     * The mapping is done using the Map< String, String> data structure.
+     * Looks up the conversion rate from base to target currency for getRate().
+     * @param fromCurrency The base currency.
+     * @param toCurrency The target currency.
+     * @return Returns the conversion rate, or -1 if it cannot be obtained.
+     * @throws IOException Handles fetchRate().
      */
-    private void loadNamesToId() {
-        for(Map.Entry<String, JsonNode> item : currencies.entrySet()) {
-            JsonNode value = item.getValue();
-            String id = value.get("id").textValue();
-            String name = value.get("currencyName").textValue();
-            namesToId.put(name, id);
+    private double lookUpRate(Currency fromCurrency, Currency toCurrency) throws IOException {
+        RateMatrix matrix = rateMatrix;
+        double matrixRate = -1;
+        if (matrix != null) {
+            int fromOrdinal = registry.getOrdinal(fromCurrency.getCurrencyCode());
+            int toOrdinal = registry.getOrdinal(toCurrency.getCurrencyCode());
+            if (fromOrdinal != -1 && toOrdinal != -1) {
+                matrixRate = matrix.getRate(fromOrdinal, toOrdinal);
+            }
+            if (matrixRate != -1 && System.currentTimeMillis() - matrix.getTimestamp() <= RATE_CACHE.getTtlMillis()) {
+                if (ratesAsOf != matrix.getTimestamp()) {
+                    ratesAsOf = matrix.getTimestamp();
+                }
+                return matrixRate;
+            }
+        }
+        CurrencyPair pair = new CurrencyPair(fromCurrency, toCurrency);
+        double rate = RATE_CACHE.get(pair, Currencies::fetchRate);
+        if (rate != -1) {
+            ratesAsOf = RATE_CACHE.getTimestamp(pair);
+            return rate;
+        }
+        if (matrixRate != -1) {
+            ratesAsOf = matrix.getTimestamp();
         }
+        return matrixRate;
     }
 
     /**
-     * Removes the currencies returned by 'computeSkipCurrencies()' from the 'currencies' data structure.
-     * @param skipCurrencies A set of currencies to be eliminated from the 'currencies' data structure.
+     * Rounds decimal numbers to two decimal places by using HALF_UP strategy.
+     * In case of numbers such as 123.0000000023456, the method formats such numbers to 123.0000000023.
+     * Also used by IncrementalConverter, so incremental conversions are rounded exactly like convert().
+     * @param number Number to be rounded to two decimal places.
+     * @return Returns a rounded number to two decimal places.
      */
-    private void removeSkipCurrencies(Set<String> skipCurrencies) {
-        for(String item : skipCurrencies) {
-            this.currencies.remove(item);
+    static BigDecimal round(BigDecimal number) {
+        String numberString = number.toString();
+        Matcher match = ROUNDING_PATTERN.matcher(numberString);
+        if (match.matches()) {
+            BigDecimal finalAmount = new BigDecimal(match.group(1));
+            int n = finalAmount.scale();
+            if(n > 2) {
+                finalAmount = finalAmount.stripTrailingZeros();
+            }
+            if(n > 2) {
+                finalAmount = finalAmount.setScale(n - 1, RoundingMode.HALF_UP);
+            }
+            return finalAmount;
         }
+        return number;
     }
 
     /*******************************************************************************************************************
@@ -148,17 +226,40 @@ public class Currencies {
      ******************************************************************************************************************/
     /**
      * Performs Conversion from the base currency to the target currency.
+     * Amounts that fit in a long are converted by FixedPointConverter without BigDecimal arithmetic. The result is
+     * the same as the one of the BigDecimal path, which is used for larger amounts.
      * @param amount The amount to be converted to the target currency.
      * @param conversionRate The conversion rate from the base to target currency.
      * @return Returns the converted amount.
      */
     public BigDecimal convert(BigInteger amount, double conversionRate) {
-        BigDecimal newAmount = new BigDecimal(amount);
-        BigDecimal finalAmount = newAmount.multiply(new BigDecimal(conversionRate));
-        if(finalAmount.compareTo(BigDecimal.valueOf(0)) == 0) {
-            return BigDecimal.valueOf(0);
+        long start = Metrics.startTime();
+        BigDecimal finalAmount = convertWholeAmount(amount, conversionRate);
+        CONVERT_LATENCY.recordSince(start);
+        return finalAmount;
+    }
+
+    /**
+     * Performs Conversion of an amount that may have decimal places from the base currency to the target currency.
+     * Whole amounts are converted by convert(BigInteger, double). Other amounts are multiplied with BigDecimal
+     * arithmetic and rounded the same way.
+     * @param amount The amount to be converted to the target currency.
+     * @param conversionRate The conversion rate from the base to target currency.
+     * @return Returns the converted amount.
+     */
+    public BigDecimal convert(BigDecimal amount, double conversionRate) {
+        if (amount.scale() <= 0) {
+            return convert(amount.toBigIntegerExact(), conversionRate);
         }
-        finalAmount = round(finalAmount);
+        long start = Metrics.startTime();
+        BigDecimal finalAmount = amount.multiply(new BigDecimal(conversionRate));
+        if(finalAmount.compareTo(BigDecimal.valueOf(0)) != 0) {
+            finalAmount = round(finalAmount);
+        }
+        else {
+            finalAmount = BigDecimal.valueOf(0);
+        }
+        CONVERT_LATENCY.recordSince(start);
         return finalAmount;
     }
 
@@ -167,7 +268,7 @@ public class Currencies {
      * @return Returns a list currency names.
      */
     public List<String> getCurrencyNames() {
-        return currencyNames;
+        return registry.getCurrencyNames();
     }
 
     /**
@@ -176,37 +277,202 @@ public class Currencies {
      * @return Returns the corresponding three character code
      */
     public String getNameToId(String name) {
-        String id = namesToId.get(name);
-        return id;
+        return registry.getNameToId(name);
     }
 
     /**
      * Returns the conversion rate from base to target currency.
-     * A connection is created with the currency API server.
-     * Returns -1 if some error occurs during connection establishment.
+     * The rate is read from the installed rate matrix if its rates are younger than the time to live of the rate
+     * cache. Otherwise it is read from the shared rate cache, and the API server is contacted only on a cache miss.
+     * If the server cannot be reached, the rate of the outdated rate matrix is returned.
+     * Returns -1 if some error occurs during connection establishment and no rate matrix has the rate.
      * @param fromCurrency The base currency.
      * @param toCurrency The target currency.
      * @return Returns the conversion rate.
-     * @throws IOException Handles the Connection(), getResponseCode(), getContent().
+     * @throws IOException Handles lookUpRate().
      */
     public double getRate(Currency fromCurrency, Currency toCurrency) throws IOException {
-        String urlQuery = "https://free.currconv.com/api/v7/convert?q="
-                + fromCurrency.getCurrencyCode() + "_"
-                + toCurrency.getCurrencyCode()
-                + "&compact=ultra&apiKey=";
-        Connection connection = new Connection(urlQuery);
-        if(connection.getConnection().getContentLength() == -1) {
+        long start = Metrics.startTime();
+        double rate = lookUpRate(fromCurrency, toCurrency);
+        RATE_LATENCY.recordSince(start);
+        if (rate == -1) {
+            RATE_FAILURES.increment();
+        }
+        return rate;
+    }
+
+    /**
+     * Returns the conversion rate from base to target currency at a point in the past, from the rate history.
+     * The rate is the one of the last rate vector recorded at or before the given time.
+     * @param fromCurrency The base currency.
+     * @param toCurrency The target currency.
+     * @param timestamp The time, in milliseconds since the epoch.
+     * @return Returns the conversion rate, or -1 if no rate history is installed or it has no such rate.
+     */
+    public double getRate(Currency fromCurrency, Currency toCurrency, long timestamp) {
+        RateHistoryStore history = rateHistory;
+        if (history == null) {
             return -1;
         }
-        int responseCode = connection.getConnection().getResponseCode();
-        if (responseCode == 200) {
-            InputStream stream = (InputStream) connection.getConnection().getContent();
-            Scanner scanner = new Scanner(stream);
-            String quote = scanner.nextLine();
-            String number = quote.substring(quote.indexOf(':') + 1, quote.indexOf('}'));
-            double conversionRate = Double.parseDouble(number);
-            return conversionRate;
+        CurrencyRegistry historyRegistry = history.getRegistry();
+        int fromOrdinal = historyRegistry.getOrdinal(fromCurrency.getCurrencyCode());
+        int toOrdinal = historyRegistry.getOrdinal(toCurrency.getCurrencyCode());
+        if (fromOrdinal == -1 || toOrdinal == -1) {
+            return -1;
+        }
+        return history.getRate(fromOrdinal, toOrdinal, timestamp);
+    }
+
+    /**
+     * Builds a rate matrix from the rates of every supported currency against the pivot currency.
+     * The pivot rates are obtained through getRates(), so rates that are already cached are not fetched again.
+     * @param pivotCode The three character code of the pivot currency, e.g. USD.
+     * @return Returns the rate matrix. Currencies the server answered without a rate have a rate of -1.
+     * @throws IOException Thrown if the rates could not be fetched, handles getRates().
+     */
+    public RateMatrix loadRateMatrix(String pivotCode) throws IOException {
+        List<CurrencyPair> pairs = createPivotPairs(pivotCode);
+        return createRateMatrix(pivotCode, pairs, getRates(pairs));
+    }
+
+    /**
+     * Builds a rate matrix from rates of every supported currency against the pivot currency fetched from the server.
+     * Unlike loadRateMatrix(), cached rates are not used, but the fetched rates are stored in the rate cache.
+     * @param pivotCode The three character code of the pivot currency, e.g. USD.
+     * @return Returns the rate matrix, or null if some error occurs during connection establishment.
+     * @throws IOException Handles fetchAllRates().
+     */
+    public RateMatrix fetchRateMatrix(String pivotCode) throws IOException {
+        List<CurrencyPair> pairs = createPivotPairs(pivotCode);
+        Map<CurrencyPair, Double> rates = new HashMap<>();
+        if (!fetchAllRates(pairs, rates)) {
+            return null;
+        }
+        return createRateMatrix(pivotCode, pairs, rates);
+    }
+
+    /**
+     * Parses a 'compact=ultra' rate response, a JSON object mapping every 'FROM_TO' key to its rate.
+     * Keys that do not belong to one of the requested pairs and rates that are not positive numbers are ignored.
+     * The response is parsed in a single pass by JsonResponses.parseRates().
+     * @param content The response body.
+     * @param pairs The requested currency pairs.
+     * @param rates The map the parsed rates are stored in.
+     * @return Returns false if the response is an error payload, otherwise true.
+     * @throws IOException Handles JsonResponses.parseRates().
+     */
+    public static boolean parseRates(InputStream content, List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates)
+            throws IOException {
+        Map<String, Integer> keys = new HashMap<>(pairs.size() * 2);
+        for (int i = 0; i < pairs.size(); i++) {
+            keys.put(pairs.get(i).getKey(), i);
+        }
+        double[] parsed = new double[pairs.size()];
+        Arrays.fill(parsed, -1);
+        if (!JsonResponses.parseRates(content, keys, parsed)) {
+            return false;
+        }
+        for (int i = 0; i < parsed.length; i++) {
+            if (parsed[i] != -1) {
+                rates.put(pairs.get(i), parsed[i]);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the conversion rates of many currency pairs.
+     * Rates that are already cached are not fetched again. The remaining pairs are fetched from the installed rate
+     * provider together, which packs them into as few requests as it allows.
+     * The fetched rates are stored in the shared rate cache.
+     * @param pairs The currency pairs.
+     * @return Returns a map of pair to conversion rate. Pairs the server answered without a rate are left out.
+     * @throws IOException Thrown if a request to the server failed, so that only part of the rates could be fetched,
+     * handles fetchAllRates().
+     */
+    public static Map<CurrencyPair, Double> getRates(Collection<CurrencyPair> pairs) throws IOException {
+        Map<CurrencyPair, Double> rates = new HashMap<>();
+        List<CurrencyPair> missing = new ArrayList<>();
+        for (CurrencyPair pair : new LinkedHashSet<>(pairs)) {
+            double rate = RATE_CACHE.getIfPresent(pair);
+            if (rate != -1) {
+                rates.put(pair, rate);
+            }
+            else {
+                missing.add(pair);
+            }
+        }
+        if (!fetchAllRates(missing, rates)) {
+            throw new IOException("Could not retrieve the rates of " + missing.size() + " currency pairs from the server.");
         }
-        return -1;
+        return rates;
+    }
+
+    /**
+     * Returns the age of the rate returned by the last successful call of getRate().
+     * @return Returns the time the rate was obtained at, in milliseconds since the epoch, or -1 if no rate was returned.
+     */
+    public static long getRatesAsOf() {
+        return ratesAsOf;
+    }
+
+    /**
+     * @return Returns the rate provider the rates are fetched from.
+     */
+    public static RateProvider getRateProvider() {
+        return rateProvider;
+    }
+
+    /**
+     * Installs the rate provider the rates are fetched from, e.g. a HedgedRateProvider over several APIs.
+     * @param provider The rate provider.
+     */
+    public static void setRateProvider(RateProvider provider) {
+        rateProvider = Objects.requireNonNull(provider);
+    }
+
+    /**
+     * @return Returns the installed rate matrix or null if none has been installed.
+     */
+    public static RateMatrix getRateMatrix() {
+        return rateMatrix;
+    }
+
+    /**
+     * Installs the rate matrix used by getRate(). Readers see either the old or the new matrix, never a mix.
+     * @param matrix The rate matrix, or null to read all rates through the rate cache.
+     */
+    public static void setRateMatrix(RateMatrix matrix) {
+        rateMatrix = matrix;
+    }
+
+    /**
+     * @return Returns the installed rate history or null if none has been installed.
+     */
+    public static RateHistoryStore getRateHistory() {
+        return rateHistory;
+    }
+
+    /**
+     * Installs the rate history used by the historical getRate() and recorded into by RateRefresher.
+     * @param history The rate history, or null to disable historical rates.
+     */
+    public static void setRateHistory(RateHistoryStore history) {
+        rateHistory = history;
+    }
+
+    /**
+     * @return Returns the currency registry the ordinals of a rate matrix refer to.
+     */
+    public CurrencyRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Returns the rate cache shared by all Currencies instances.
+     * @return Returns the rate cache.
+     */
+    public static RateCache getRateCache() {
+        return RATE_CACHE;
     }
 }
@@ -0,0 +1,71 @@
+package Code;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class holds the currency metadata needed by the user interface: the currencies, the sorted currency names
+ * shown by both combo boxes and the search index over them.
+ * Loading it parses 'currencies.json' and queries Java's Currency class, so it is done once on a background thread
+ * while the stage is already shown. The names are an unmodifiable ObservableList shared by both combo boxes.
+ */
+public final class CurrencyCatalog {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currencies currencies;
+    private final ObservableList<String> currencyNames;
+    private final CurrencySearchIndex searchIndex;
+
+    /**
+     * Parameterized constructor.
+     * @param currencies The currencies.
+     */
+    private CurrencyCatalog(Currencies currencies) {
+        this.currencies = currencies;
+        List<String> names = currencies.getCurrencyNames();
+        List<String> codes = new ArrayList<>(names.size());
+        for (String name : names) {
+            codes.add(currencies.getNameToId(name));
+        }
+        this.currencyNames = FXCollections.unmodifiableObservableList(FXCollections.observableList(names));
+        this.searchIndex = new CurrencySearchIndex(names, codes);
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Loads the currency metadata. May be called on any thread.
+     * @return Returns the catalog.
+     * @throws IOException Handles the Currencies constructor.
+     */
+    public static CurrencyCatalog load() throws IOException {
+        return new CurrencyCatalog(new Currencies());
+    }
+
+    /**
+     * @return Returns the currencies.
+     */
+    public Currencies getCurrencies() {
+        return currencies;
+    }
+
+    /**
+     * @return Returns the unmodifiable list of currency names sorted alphabetically.
+     */
+    public ObservableList<String> getCurrencyNames() {
+        return currencyNames;
+    }
+
+    /**
+     * @return Returns the search index over the currency names and codes.
+     */
+    public CurrencySearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+}
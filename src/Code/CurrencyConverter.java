@@ -1,6 +1,8 @@
 package Code;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
+import javafx.concurrent.Task;
 import javafx.scene.control.TextFormatter;
 import javafx.scene.image.Image;
 import javafx.scene.Scene;
@@ -12,12 +14,27 @@ import java.util.function.UnaryOperator;
  * This class is the entry point of the application.
  * The JavaFX stage is configured here.
  * The event handlers are specified in this class.
+ * The stage is shown before the currency metadata is loaded; the metadata and the rate snapshot are loaded on a
+ * background thread and installed in the user interface once they are ready.
+ * The time to the first frame and to the loaded metadata are recorded as the 'startup.firstFrameMillis' and
+ * 'startup.currenciesLoadedMillis' metrics, and printed to the console if '-Dcurrency.profile=true' is set.
  *
  * @author Pritesh Parmar
  */
 
 public class CurrencyConverter extends Application {
 
+    /**********************************************************************************************
+     * Class Variables
+     **********************************************************************************************/
+    private static long launchNanos = System.nanoTime();
+
+    /**********************************************************************************************
+     * Instance Variables
+     **********************************************************************************************/
+    private RateRefresher rateRefresher;
+    private long startNanos;
+
     /*******************************************************************************************************************
      * Private Methods
      ******************************************************************************************************************/
@@ -60,6 +77,7 @@ public class CurrencyConverter extends Application {
         TextFormatter<String> input = new TextFormatter<String>(intFilter);
         userInterface.getFromTextField().setTextFormatter(input);
         userInterface.getFromTextField().textProperty().addListener((observable, oldVal, newVal) -> userInterface.handleTextFieldChange(observable, oldVal, newVal));
+        userInterface.getFanOutButton().setOnAction(event -> userInterface.handleFanOutButton(event));
         userInterface.getFromSelect().setOnKeyPressed(event -> {
             try {
                 userInterface.handleKeyFromSelectPress(event);
@@ -76,20 +94,134 @@ public class CurrencyConverter extends Application {
         });
     }
 
+    /**
+     * Loads the currency metadata and the rate snapshot on a background thread.
+     * Once loaded, the metadata is installed in the user interface and the background refresh of the rates starts.
+     * @param userInterface The userInterface object which contains all the application controls.
+     */
+    private void loadCatalog(UserInterface userInterface) {
+        Task<CurrencyCatalog> task = new Task<>() {
+            @Override
+            protected CurrencyCatalog call() throws IOException {
+                CurrencyCatalog catalog = CurrencyCatalog.load();
+                loadRateSnapshot();
+                return catalog;
+            }
+        };
+        task.setOnSucceeded(event -> {
+            CurrencyCatalog catalog = task.getValue();
+            try {
+                userInterface.setCatalog(catalog);
+            } catch (IOException e) {
+                handleLoadFailure(userInterface, e);
+                return;
+            }
+            reportStartup("startup.currenciesLoadedMillis", "Currencies loaded");
+            rateRefresher = new RateRefresher(catalog.getCurrencies());
+            rateRefresher.start();
+        });
+        task.setOnFailed(event -> handleLoadFailure(userInterface, task.getException()));
+        Thread thread = new Thread(task, "currency-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Tells the user that the currency metadata could not be loaded, and loads it again if the user asks to.
+     * @param userInterface The userInterface object which contains all the application controls.
+     * @param error The error that occurred while loading.
+     */
+    private void handleLoadFailure(UserInterface userInterface, Throwable error) {
+        if (error != null) {
+            error.printStackTrace();
+        }
+        if (userInterface.showLoadFailure(error)) {
+            loadCatalog(userInterface);
+        }
+    }
+
+    /**
+     * Reports the time to the first frame, i.e. the first animation pulse after the stage has been shown.
+     */
+    private void measureFirstFrame() {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                reportStartup("startup.firstFrameMillis", "First frame");
+            }
+        }.start();
+    }
+
+    /**
+     * Records the time elapsed since start() as a metric, and prints it if profiling is enabled.
+     * @param metric The name of the metric.
+     * @param label The name of the startup event, printed with the times.
+     */
+    private void reportStartup(String metric, String label) {
+        long millis = (System.nanoTime() - startNanos) / 1000000;
+        long sinceLaunchMillis = (System.nanoTime() - launchNanos) / 1000000;
+        Metrics.gauge(metric, () -> millis);
+        if (ConversionProfiler.isEnabled()) {
+            System.out.printf("%s: %d ms after start(), %d ms after launch%n", label, millis, sinceLaunchMillis);
+        }
+    }
+
+    /**
+     * Installs the rates of the offline rate snapshot, if there is one, so that conversions work without a connection.
+     * A missing or corrupt snapshot is not an error; the rates are then fetched from the server.
+     * The rate history is opened as well, so that the refreshed rates are recorded.
+     */
+    private void loadRateSnapshot() {
+        try {
+            Currencies.setRateMatrix(RateSnapshotFile.load(CurrencyRegistry.getInstance()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        try {
+            Currencies.setRateHistory(RateHistoryStore.open(CurrencyRegistry.getInstance()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**********************************************************************************************
      * Public methods
      **********************************************************************************************/
 
     /**
      * The main entry point for the application
+     * The stage is shown right away and the currency metadata is loaded in the background.
      * @param primaryStage The Stage object that represents the primary window.
      * @throws IOException Throws an exception if the userInterface class throws an Exception.
      */
     @Override
     public void start(Stage primaryStage) throws IOException {
+        startNanos = System.nanoTime();
         UserInterface userInterface = new UserInterface();
         configureStage(primaryStage, userInterface);
+        measureFirstFrame();
         configureEventHandlers(userInterface);
+        loadCatalog(userInterface);
+    }
+
+    /**
+     * Stops the background refresh of the conversion rates and closes the rate history when the application exits.
+     */
+    @Override
+    public void stop() {
+        if (rateRefresher != null) {
+            rateRefresher.stop();
+        }
+        RateHistoryStore history = Currencies.getRateHistory();
+        if (history != null) {
+            Currencies.setRateHistory(null);
+            try {
+                history.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
     }
 
     /**
@@ -97,6 +229,7 @@ public class CurrencyConverter extends Application {
      * @param args Command Line arguments.
      */
     public static void main(String[] args) {
+        launchNanos = System.nanoTime();
         launch(args);
     }
 }
@@ -1,12 +1,17 @@
 package Code;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.HashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * This is an independent class in the application.
@@ -15,45 +20,104 @@ import java.util.Map;
  * This class must be run once before using the application driver : 'CurrencyConverter.java'.
  * Once run, the class creates the 'currencies.json' in the JSON folder.
  * The currencies are stored in a file named : 'currencies.json'.
+ * It also stores the filtered and sorted currency metadata in 'currencies.bin' in the Data folder, which the
+ * application loads at startup without parsing JSON, and a snapshot of the current conversion rates in 'rates.bin'
+ * in the Data folder, which lets the application start and convert without connecting to the server.
  */
 
 public class CurrencyJSONRetriever {
 
     /**
-     * Stores the retrieved currency data from the server.
+     * Stores the retrieved currency data from the server, the fields of every currency by currency code.
      */
-    Map<String,Object> quotes;
+    Map<String, Map<String, String>> quotes;
 
     /*******************************************************************************************************************
      * Private Methods
      ******************************************************************************************************************/
     /**
      * Creates a .json file, 'currencies.json' and writes the data stored in the JSON node to the file.
-     * @throws IOException Handles methods of the Mapper and Writer classes.
+     * The file is left untouched if it already holds the same data.
+     * @throws IOException Handles writeValueAsBytes() and the Files methods.
      */
     private void createJSONFile() throws IOException {
-        String pathName = "src/Resources/JSON/currencies.json";
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectWriter writer = mapper.writer();
-        File currenciesFile = new File(pathName);
-        writer.writeValue(currenciesFile, this.quotes.get("results"));
+        Path currenciesFile = Paths.get("src/Resources/JSON/currencies.json");
+        byte[] json = JsonResponses.MAPPER.writeValueAsBytes(this.quotes);
+        if (Files.isRegularFile(currenciesFile) && Arrays.equals(Files.readAllBytes(currenciesFile), json)) {
+            return;
+        }
+        Files.write(currenciesFile, json);
+    }
+
+    /**
+     * Creates the binary metadata file 'currencies.bin' from the retrieved currency data.
+     * Only currencies that are also supported by Java's Currency class are included, sorted by their code.
+     * @throws IOException Handles CurrencyMetadataFile.write().
+     */
+    private void createMetadataFile() throws IOException {
+        Set<String> codeSet = new HashSet<>(this.quotes.keySet());
+        codeSet.removeAll(CurrencyRegistry.computeSkipCurrencies(this.quotes.keySet()));
+        List<String> codes = new ArrayList<>(codeSet);
+        Collections.sort(codes);
+        String[] names = new String[codes.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = this.quotes.get(codes.get(i)).get("currencyName");
+        }
+        CurrencyMetadataFile.write(codes.toArray(new String[0]), names);
+    }
+
+    /**
+     * Fetches the rates of all retrieved currencies against USD and writes them to the rate snapshot file.
+     * Only currencies that are also supported by Java's Currency class are included, sorted by their code.
+     * No snapshot is written unless the rate of every currency was retrieved, so a partial snapshot never replaces a
+     * complete one.
+     * @throws IOException Thrown if some rates are missing, handles Currencies.getRates() and RateSnapshotFile.write().
+     */
+    private void createRateSnapshot() throws IOException {
+        Set<String> javaCurrencies = new HashSet<>();
+        for (Currency item : Currency.getAvailableCurrencies()) {
+            javaCurrencies.add(item.getCurrencyCode());
+        }
+        List<String> codes = new ArrayList<>(this.quotes.keySet());
+        codes.retainAll(javaCurrencies);
+        Collections.sort(codes);
+        Currency pivot = Currency.getInstance("USD");
+        List<CurrencyPair> pairs = new ArrayList<>();
+        for (String code : codes) {
+            pairs.add(new CurrencyPair(pivot, Currency.getInstance(code)));
+        }
+        Map<CurrencyPair, Double> rates = Currencies.getRates(pairs);
+        double[] pivotRates = new double[codes.size()];
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < pivotRates.length; i++) {
+            Double rate = rates.get(pairs.get(i));
+            if (codes.get(i).equals("USD")) {
+                pivotRates[i] = 1;
+            }
+            else if (rate == null) {
+                missing.add(codes.get(i));
+            }
+            else {
+                pivotRates[i] = rate;
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IOException("Could not retrieve the rates of " + missing + ", the rate snapshot was not written.");
+        }
+        RateSnapshotFile.write(codes.toArray(new String[0]), codes.indexOf("USD"), pivotRates, System.currentTimeMillis());
     }
 
     /*******************************************************************************************************************
      * Public Methods
      ******************************************************************************************************************/
     /**
-     *Establishes a connection with the server and retrieves currency data in .json format.
-     * @throws IOException Handles the Connection class and its methods.
+     * Retrieves the currency data from the installed rate provider, the currconv API server by default.
+     * @throws IOException Thrown if the provider cannot answer, handles RateProvider.fetchCurrencies().
      */
     public void retrieveCurrencies() throws IOException {
-        String urlString = "https://free.currconv.com/api/v7/currencies?apiKey=";
-        Connection connection = new Connection(urlString);
-        int responseCode = connection.getConnection().getResponseCode();
-        if (responseCode == 200) {
-            InputStream stream = (InputStream) connection.getConnection().getContent();
-            ObjectMapper mapper = new ObjectMapper();
-            this.quotes = mapper.readValue(stream, HashMap.class);
+        this.quotes = Currencies.getRateProvider().fetchCurrencies();
+        if (this.quotes == null) {
+            throw new IOException("Could not retrieve the currencies from the server.");
         }
     }
 
@@ -66,5 +130,7 @@ public class CurrencyJSONRetriever {
         CurrencyJSONRetriever obj = new CurrencyJSONRetriever();
         obj.retrieveCurrencies();
         obj.createJSONFile();
+        obj.createMetadataFile();
+        obj.createRateSnapshot();
     }
 }
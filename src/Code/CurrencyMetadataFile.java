@@ -0,0 +1,178 @@
+package Code;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class reads and writes the currency metadata in a compact binary format.
+ * The file is generated by CurrencyJSONRetriever from 'currencies.json', already filtered to the currencies supported
+ * by Java's Currency class and sorted, so the registry is built from it without Jackson and without sorting.
+ * The file starts with a fixed header, followed by the code table, the name references and the name table:
+ * <pre>
+ *     int    magic        'CCMD'
+ *     int    version      1
+ *     int    count        number of currencies
+ *     int    nameCount    number of distinct names
+ *     byte   codes[3 * count]    ASCII currency codes sorted alphabetically; the index of a code is its ordinal
+ *     short  nameIndex[count]    index of the name of every currency in the name table
+ *     short  nameOrder[count]    ordinals sorted by the name of their currency
+ *     names[nameCount]           every distinct name once, as an unsigned short length and UTF-8 bytes
+ * </pre>
+ * The file is read from the 'Resources/Data/currencies.bin' resource and written to 'src/Resources/Data/currencies.bin'.
+ */
+public final class CurrencyMetadataFile {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int MAGIC = 0x43434D44;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final String RESOURCE = "Resources/Data/currencies.bin";
+    private static final Path DEFAULT_PATH = Paths.get("src/" + RESOURCE);
+
+    /**
+     * This class only has static methods.
+     */
+    private CurrencyMetadataFile() {
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Reads the currency metadata file and builds a registry from it.
+     * @return Returns the registry, or null if there is no metadata file or it contains a currency that is not
+     * supported by Java's Currency class in this JVM.
+     * @throws IOException Thrown if the metadata file is corrupt.
+     */
+    public static CurrencyRegistry load() throws IOException {
+        InputStream inputStream = ClassLoader.getSystemClassLoader().getResourceAsStream(RESOURCE);
+        if (inputStream == null) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try (inputStream) {
+            buffer = ByteBuffer.wrap(inputStream.readAllBytes());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Invalid currency metadata");
+        }
+        int count = buffer.getInt();
+        int nameCount = buffer.getInt();
+        if (count <= 0 || nameCount <= 0 || nameCount > count || buffer.remaining() < 7 * count) {
+            throw new IOException("Invalid currency metadata");
+        }
+        String[] codes = new String[count];
+        byte[] code = new byte[3];
+        for (int i = 0; i < count; i++) {
+            buffer.get(code);
+            codes[i] = new String(code, StandardCharsets.US_ASCII);
+        }
+        int[] nameIndex = new int[count];
+        for (int i = 0; i < count; i++) {
+            nameIndex[i] = Short.toUnsignedInt(buffer.getShort());
+        }
+        int[] nameOrder = new int[count];
+        for (int i = 0; i < count; i++) {
+            nameOrder[i] = Short.toUnsignedInt(buffer.getShort());
+        }
+        String[] nameTable = new String[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            if (buffer.remaining() < 2) {
+                throw new IOException("Invalid currency metadata");
+            }
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (buffer.remaining() < length) {
+                throw new IOException("Invalid currency metadata");
+            }
+            nameTable[i] = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        }
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            if (nameIndex[i] >= nameCount || nameOrder[i] >= count) {
+                throw new IOException("Invalid currency metadata");
+            }
+            names[i] = nameTable[nameIndex[i]];
+        }
+        try {
+            return new CurrencyRegistry(codes, names, nameOrder);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the currency metadata file.
+     * The file is written to a temporary file first and then moved in place, so readers never see a partial file.
+     * @param codes The currency codes, sorted alphabetically.
+     * @param names The currency names, in the order of the codes.
+     * @throws IOException Handles the Files methods.
+     */
+    public static void write(String[] codes, String[] names) throws IOException {
+        int count = codes.length;
+        Map<String, Integer> nameTable = new HashMap<>();
+        int[] nameIndex = new int[count];
+        int nameBytes = 0;
+        byte[][] encodedNames = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            Integer index = nameTable.get(names[i]);
+            if (index == null) {
+                index = nameTable.size();
+                nameTable.put(names[i], index);
+                encodedNames[index] = names[i].getBytes(StandardCharsets.UTF_8);
+                nameBytes += 2 + encodedNames[index].length;
+            }
+            nameIndex[i] = index;
+        }
+        Integer[] nameOrder = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            nameOrder[i] = i;
+        }
+        Arrays.sort(nameOrder, (first, second) -> names[first].compareTo(names[second]));
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 7 * count + nameBytes);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(nameTable.size());
+        for (String code : codes) {
+            buffer.put(code.getBytes(StandardCharsets.US_ASCII), 0, 3);
+        }
+        for (int index : nameIndex) {
+            buffer.putShort((short) index);
+        }
+        for (int ordinal : nameOrder) {
+            buffer.putShort((short) ordinal);
+        }
+        for (int i = 0; i < nameTable.size(); i++) {
+            buffer.putShort((short) encodedNames[i].length).put(encodedNames[i]);
+        }
+        Path path = DEFAULT_PATH.toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Path temporary = Files.createTempFile(path.getParent(), "currencies", ".tmp");
+        Files.write(temporary, buffer.array());
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the currency metadata of a registry to the metadata file.
+     * @param registry The registry.
+     * @throws IOException Handles write().
+     */
+    public static void write(CurrencyRegistry registry) throws IOException {
+        String[] codes = new String[registry.size()];
+        String[] names = new String[registry.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = registry.getCode(i);
+            names[i] = registry.getName(i);
+        }
+        write(codes, names);
+    }
+}
@@ -0,0 +1,74 @@
+package Code;
+
+import java.util.Currency;
+
+/**
+ * This class represents an ordered pair of currencies, i.e. a base currency and a target currency.
+ * It is immutable and is used as the key of cached conversion rates.
+ */
+public final class CurrencyPair {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currency fromCurrency;
+    private final Currency toCurrency;
+    private final String key;
+
+    /**
+     * Parameterized constructor.
+     * @param fromCurrency The base currency.
+     * @param toCurrency The target currency.
+     */
+    public CurrencyPair(Currency fromCurrency, Currency toCurrency) {
+        this.fromCurrency = fromCurrency;
+        this.toCurrency = toCurrency;
+        this.key = fromCurrency.getCurrencyCode() + "_" + toCurrency.getCurrencyCode();
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * @return Returns the base currency.
+     */
+    public Currency getFromCurrency() {
+        return fromCurrency;
+    }
+
+    /**
+     * Returns the pair in the 'FROM_TO' format used by the currency API in queries and responses.
+     * @return Returns the query key of the pair.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return Returns the target currency.
+     */
+    public Currency getToCurrency() {
+        return toCurrency;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CurrencyPair)) {
+            return false;
+        }
+        return key.equals(((CurrencyPair) other).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
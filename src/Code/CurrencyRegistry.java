@@ -0,0 +1,218 @@
+package Code;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * This class is the process wide registry of the currencies supported by the application.
+ * The currencies are loaded once per JVM and are never modified afterwards. They are read from the precomputed
+ * currencies.bin metadata file if CurrencyJSONRetriever has generated one, otherwise from the currencies.json file.
+ * Every currency is given a dense ordinal, i.e. its index in the list of currency codes sorted alphabetically.
+ * All lookups are backed by hash maps or arrays, and the registry is safe to share between threads.
+ */
+public final class CurrencyRegistry {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static volatile CurrencyRegistry instance;
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final String[] codes;
+    private final Currency[] currencies;
+    private final String[] names;
+    private final List<String> currencyNames;
+    private final Map<String, Integer> codeToOrdinal;
+    private final Map<String, String> namesToId;
+
+    /**
+     * Parameterized constructor.
+     * Builds the lookup tables from the supported currencies.
+     * @param codes The currency codes, sorted alphabetically. The index of a code is its ordinal.
+     * @param names The currency names, in the order of the codes.
+     * @param nameOrder The ordinals sorted by the name of their currency, or null if they are to be sorted here.
+     */
+    CurrencyRegistry(String[] codes, String[] names, int[] nameOrder) {
+        int size = codes.length;
+        this.codes = codes;
+        this.names = names;
+        currencies = new Currency[size];
+        codeToOrdinal = new HashMap<>(size * 2);
+        namesToId = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            currencies[i] = Currency.getInstance(codes[i]);
+            codeToOrdinal.put(codes[i], i);
+            namesToId.put(names[i], codes[i]);
+        }
+        List<String> sortedNames = new ArrayList<>(size);
+        if (nameOrder != null) {
+            for (int ordinal : nameOrder) {
+                sortedNames.add(names[ordinal]);
+            }
+        }
+        else {
+            sortedNames.addAll(Arrays.asList(names));
+            Collections.sort(sortedNames);
+        }
+        currencyNames = Collections.unmodifiableList(sortedNames);
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Reads the currency data from the 'currencies.json' file.
+     * @return Returns a map of currency code to the fields describing the currency.
+     * @throws IOException Handles JsonResponses.readObjects().
+     */
+    private static Map<String, Map<String, String>> readCurrencies() throws IOException {
+        InputStream inputStream = ClassLoader.getSystemClassLoader().getResourceAsStream("Resources/JSON/currencies.json");
+        if (inputStream == null) {
+            throw new IOException("Resources/JSON/currencies.json not found. Run CurrencyJSONRetriever first.");
+        }
+        try (inputStream) {
+            return JsonResponses.readObjects(inputStream, null);
+        }
+    }
+
+    /**
+     * Removes the given currencies from the currency data.
+     * @param currencyData The currency data read from 'currencies.json'.
+     * @param skipCurrencies A set of currencies to be eliminated from the currency data.
+     */
+    private static void removeSkipCurrencies(Map<String, Map<String, String>> currencyData, Set<String> skipCurrencies) {
+        for(String item : skipCurrencies) {
+            currencyData.remove(item);
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Computes the currencies that are not supported by either the API or Java's Currency class.
+     * Creates a set of API supported currencies and a set of 'Currency' class currencies.
+     * Computes the currencies that are not present in the intersection of the two sets mentioned above.
+     * @param apiCurrencyCodes The currency codes supported by the API.
+     * @return Currencies not present in the intersection of the Currency class set and API currency set.
+     */
+    public static Set<String> computeSkipCurrencies(Set<String> apiCurrencyCodes) {
+        Set<String> javaCurrencies = new HashSet<>();
+        Set<Currency> inbuiltCurrency = Currency.getAvailableCurrencies();
+        for(Currency item : inbuiltCurrency) {
+            javaCurrencies.add(item.toString());
+        }
+        Set<String> apiCurrencies = new HashSet<>(apiCurrencyCodes);
+        Set<String> commonCurrencies = new HashSet<>(javaCurrencies);
+        commonCurrencies.retainAll(apiCurrencies);
+        Set<String> finalCurrencies = apiCurrencies;
+        finalCurrencies.removeAll(commonCurrencies);
+        return finalCurrencies;
+    }
+
+    /**
+     * Loads a new registry. Unlike getInstance(), the currency data is read on every call.
+     * The precomputed 'currencies.bin' metadata file is read if there is one, otherwise 'currencies.json'.
+     * @return Returns the new registry.
+     * @throws IOException Handles CurrencyMetadataFile.load() and readCurrencies().
+     */
+    public static CurrencyRegistry load() throws IOException {
+        CurrencyRegistry registry = CurrencyMetadataFile.load();
+        if (registry != null) {
+            return registry;
+        }
+        Map<String, Map<String, String>> currencyData = readCurrencies();
+        removeSkipCurrencies(currencyData, computeSkipCurrencies(currencyData.keySet()));
+        String[] codes = currencyData.keySet().toArray(new String[0]);
+        Arrays.sort(codes);
+        String[] names = new String[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            names[i] = currencyData.get(codes[i]).get("currencyName");
+        }
+        return new CurrencyRegistry(codes, names, null);
+    }
+
+    /**
+     * Returns the shared registry, loading it on first use.
+     * @return Returns the process wide registry.
+     * @throws IOException Handles load().
+     */
+    public static CurrencyRegistry getInstance() throws IOException {
+        CurrencyRegistry registry = instance;
+        if (registry == null) {
+            synchronized (CurrencyRegistry.class) {
+                registry = instance;
+                if (registry == null) {
+                    registry = load();
+                    instance = registry;
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Returns the three character code of the currency with the given ordinal.
+     * @param ordinal The dense ordinal of the currency.
+     * @return Returns the currency code.
+     */
+    public String getCode(int ordinal) {
+        return codes[ordinal];
+    }
+
+    /**
+     * Returns the Currency object of the currency with the given ordinal.
+     * @param ordinal The dense ordinal of the currency.
+     * @return Returns the Currency object.
+     */
+    public Currency getCurrency(int ordinal) {
+        return currencies[ordinal];
+    }
+
+    /**
+     *Returns a list of available currency names sorted alphabetically.
+     * @return Returns an unmodifiable list of currency names.
+     */
+    public List<String> getCurrencyNames() {
+        return currencyNames;
+    }
+
+    /**
+     * Returns the name of the currency with the given ordinal.
+     * @param ordinal The dense ordinal of the currency.
+     * @return Returns the currency name.
+     */
+    public String getName(int ordinal) {
+        return names[ordinal];
+    }
+
+    /**
+     * Returns the corresponding three character code of the given currency name.
+     * @param name The currency name.
+     * @return Returns the corresponding three character code or null if the name is unknown.
+     */
+    public String getNameToId(String name) {
+        return namesToId.get(name);
+    }
+
+    /**
+     * Returns the dense ordinal of the given currency code.
+     * @param code The three character currency code.
+     * @return Returns the ordinal or -1 if the code is unknown.
+     */
+    public int getOrdinal(String code) {
+        Integer ordinal = codeToOrdinal.get(code);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Returns the number of supported currencies.
+     * @return Returns the number of currencies.
+     */
+    public int size() {
+        return codes.length;
+    }
+}
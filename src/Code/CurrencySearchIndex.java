@@ -0,0 +1,183 @@
+package Code;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class is a prefix index over the names and ISO codes of the currencies, used for type-ahead search.
+ * The index is a trie built once from the sorted currency names. Every node stores the set of names whose name or
+ * code starts with the prefix leading to it and the first of them, so a prefix is looked up in time proportional to
+ * its length, independently of the number of currencies.
+ * Matching ignores case and accents, so an accented letter is matched by the plain letter, and 'usd' matches 'US Dollar'.
+ * The index is immutable and safe to share between threads.
+ */
+public final class CurrencySearchIndex {
+
+    /**
+     * A node of the trie.
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private final BitSet matches = new BitSet();
+        private int firstIndex = -1;
+
+        /**
+         * Returns the child reached with a character.
+         * @param key The character.
+         * @return Returns the child, or null if there is none.
+         */
+        private Node child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Returns the child reached with a character, creating it if there is none.
+         * @param key The character.
+         * @return Returns the child.
+         */
+        private Node addChild(char key) {
+            Node child = child(key);
+            if (child == null) {
+                int size = keys.length;
+                keys = Arrays.copyOf(keys, size + 1);
+                children = Arrays.copyOf(children, size + 1);
+                keys[size] = key;
+                child = new Node();
+                children[size] = child;
+            }
+            return child;
+        }
+
+        /**
+         * Adds a name to the matches of the node.
+         * @param index The index of the name.
+         */
+        private void addMatch(int index) {
+            matches.set(index);
+            if (firstIndex == -1 || index < firstIndex) {
+                firstIndex = index;
+            }
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Node root = new Node();
+    private final Map<String, Integer> nameToIndex;
+    private final int size;
+
+    /**
+     * Parameterized constructor.
+     * @param names The currency names, in the order of the list the index refers to.
+     * @param codes The three character codes of the currencies, in the order of the names.
+     */
+    public CurrencySearchIndex(List<String> names, List<String> codes) {
+        size = names.size();
+        nameToIndex = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            nameToIndex.put(names.get(i), i);
+            root.addMatch(i);
+            insert(normalize(names.get(i)), i);
+            insert(normalize(codes.get(i)), i);
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Adds a name to the nodes of every prefix of a key.
+     * @param key The normalized name or code.
+     * @param index The index of the name.
+     */
+    private void insert(String key, int index) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.addChild(key.charAt(i));
+            node.addMatch(index);
+        }
+    }
+
+    /**
+     * Returns the node of a prefix.
+     * @param prefix The prefix, not normalized.
+     * @return Returns the node, or null if no name or code starts with the prefix.
+     */
+    private Node find(CharSequence prefix) {
+        String key = normalize(prefix);
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns a string in lower case with its accents removed, as it is stored in the index.
+     * @param text The string.
+     * @return Returns the normalized string.
+     */
+    public static String normalize(CharSequence text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns the first name whose name or code starts with the prefix.
+     * @param prefix The prefix typed by the user.
+     * @return Returns the index of the name, or -1 if there is no match.
+     */
+    public int firstMatch(CharSequence prefix) {
+        Node node = find(prefix);
+        return node == null ? -1 : node.firstIndex;
+    }
+
+    /**
+     * Returns the names whose name or code starts with the prefix.
+     * @param prefix The prefix typed by the user.
+     * @return Returns a new set of the indices of the names. It is empty if there is no match.
+     */
+    public BitSet matches(CharSequence prefix) {
+        Node node = find(prefix);
+        return node == null ? new BitSet() : (BitSet) node.matches.clone();
+    }
+
+    /**
+     * Returns the index of a currency name.
+     * @param name The currency name.
+     * @return Returns the index, or -1 if the name is unknown.
+     */
+    public int indexOf(String name) {
+        Integer index = nameToIndex.get(name);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return Returns the number of names in the index.
+     */
+    public int size() {
+        return size;
+    }
+}
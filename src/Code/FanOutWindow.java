@@ -0,0 +1,239 @@
+package Code;
+
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.image.Image;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.Stage;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.function.Function;
+
+/**
+ * This class is the 'All currencies' window, which shows the amount entered in the main window converted into every
+ * supported currency at once, in a sortable table.
+ * Every keystroke recomputes the whole table on the JavaFX application thread without contacting the server: the row
+ * of the installed RateMatrix for the base currency is multiplied by the amount in a single loop by BulkConverter, and
+ * the existing row models are updated in place. The TableView is virtualized, so only the visible cells are formatted,
+ * with the rounding of Currencies.convert(). Every converted amount scales with the entered amount, so a table sorted
+ * by amount or rate keeps its order while the amount changes.
+ * The time of every recomputation is recorded as the 'fanout.compute' metric and printed with '-Dcurrency.profile=true'.
+ */
+public class FanOutWindow {
+
+    /**
+     * A row of the table: a target currency, its rate and the converted amount.
+     */
+    private static final class Row {
+        private final int ordinal;
+        private final ReadOnlyStringWrapper code;
+        private final ReadOnlyStringWrapper name;
+        private final ReadOnlyDoubleWrapper rate = new ReadOnlyDoubleWrapper(Double.NaN);
+        private final ReadOnlyDoubleWrapper amount = new ReadOnlyDoubleWrapper(Double.NaN);
+
+        /**
+         * Parameterized constructor.
+         * @param ordinal The ordinal of the target currency.
+         * @param code The code of the target currency.
+         * @param name The name of the target currency.
+         */
+        private Row(int ordinal, String code, String name) {
+            this.ordinal = ordinal;
+            this.code = new ReadOnlyStringWrapper(code);
+            this.name = new ReadOnlyStringWrapper(name);
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final MathContext RATE_PRECISION = new MathContext(6);
+    private static final Metrics.Latency COMPUTE_LATENCY = Metrics.latency("fanout.compute");
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currencies currencies;
+    private final AmountParser parser;
+    private final CurrencyRegistry registry;
+    private final ConversionProfiler profiler;
+    private final Row[] rowsByOrdinal;
+    private final double[] rates;
+    private final double[] amounts;
+    private final TableView<Row> table;
+    private final Label statusLabel;
+    private final Stage stage;
+    private BigDecimal amount;
+
+    /**
+     * Parameterized constructor.
+     * Creates the window and a row for every supported currency. The window is not shown.
+     * @param currencies The currencies.
+     * @param parser The parser of the amounts entered by the user.
+     */
+    public FanOutWindow(Currencies currencies, AmountParser parser) {
+        this.currencies = currencies;
+        this.parser = parser;
+        this.registry = currencies.getRegistry();
+        this.profiler = new ConversionProfiler("Fan-out");
+        int size = registry.size();
+        this.rowsByOrdinal = new Row[size];
+        this.rates = new double[size];
+        this.amounts = new double[size];
+        ObservableList<Row> rows = FXCollections.observableArrayList();
+        for (int i = 0; i < size; i++) {
+            rowsByOrdinal[i] = new Row(i, registry.getCode(i), registry.getName(i));
+            rows.add(rowsByOrdinal[i]);
+        }
+        this.table = createTable(rows);
+        this.statusLabel = new Label();
+        this.statusLabel.getStyleClass().add("rates-label");
+        this.stage = createStage();
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Creates a column of numbers whose cells are formatted when they are shown. Unknown numbers are left blank.
+     * @param title The title of the column.
+     * @param property Returns the number of a row.
+     * @param formatter Formats the number of a row.
+     * @return Returns the column.
+     */
+    private static TableColumn<Row, Number> createNumberColumn(String title, Function<Row, ObservableValue<Number>> property,
+                                                               Function<Row, String> formatter) {
+        TableColumn<Row, Number> column = new TableColumn<>(title);
+        column.setCellValueFactory(cellData -> property.apply(cellData.getValue()));
+        column.setCellFactory(tableColumn -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number item, boolean empty) {
+                super.updateItem(item, empty);
+                Row row = getTableRow() == null ? null : getTableRow().getItem();
+                if (empty || item == null || Double.isNaN(item.doubleValue()) || row == null) {
+                    setText(null);
+                }
+                else {
+                    setText(formatter.apply(row));
+                }
+            }
+        });
+        column.getStyleClass().add("number-column");
+        return column;
+    }
+
+    /**
+     * Creates the table of the converted amounts, sorted by currency code.
+     * @param rows The rows of the table.
+     * @return Returns the table.
+     */
+    private TableView<Row> createTable(ObservableList<Row> rows) {
+        TableColumn<Row, String> codeColumn = new TableColumn<>("Code");
+        codeColumn.setCellValueFactory(cellData -> cellData.getValue().code.getReadOnlyProperty());
+        TableColumn<Row, String> nameColumn = new TableColumn<>("Currency");
+        nameColumn.setCellValueFactory(cellData -> cellData.getValue().name.getReadOnlyProperty());
+        nameColumn.setPrefWidth(220);
+        TableColumn<Row, Number> rateColumn = createNumberColumn("Rate", row -> row.rate.getReadOnlyProperty(),
+                row -> new BigDecimal(row.rate.get()).round(RATE_PRECISION).stripTrailingZeros().toPlainString());
+        TableColumn<Row, Number> amountColumn = createNumberColumn("Amount", row -> row.amount.getReadOnlyProperty(),
+                row -> currencies.convert(amount, row.rate.get()).toPlainString());
+        amountColumn.setPrefWidth(160);
+        TableView<Row> tableView = new TableView<>(rows);
+        tableView.getColumns().add(codeColumn);
+        tableView.getColumns().add(nameColumn);
+        tableView.getColumns().add(rateColumn);
+        tableView.getColumns().add(amountColumn);
+        tableView.getSortOrder().add(codeColumn);
+        tableView.setPlaceholder(new Label("No currencies"));
+        return tableView;
+    }
+
+    /**
+     * Creates the stage of the window.
+     * @return Returns the stage.
+     */
+    private Stage createStage() {
+        BorderPane root = new BorderPane(table);
+        root.setTop(statusLabel);
+        root.setPadding(new Insets(15, 15, 15, 15));
+        BorderPane.setMargin(statusLabel, new Insets(0, 0, 10, 0));
+        Stage window = new Stage();
+        window.setTitle("Currency Converter - All currencies");
+        window.getIcons().add(new Image("/Resources/Images/logo.png"));
+        Scene scene = new Scene(root, 560, 600);
+        scene.getStylesheets().add("/Resources/css/styles.css");
+        window.setScene(scene);
+        return window;
+    }
+
+    /**
+     * Clears the rates and amounts of every row.
+     * @param status The message shown above the table.
+     */
+    private void clear(String status) {
+        for (Row row : rowsByOrdinal) {
+            row.rate.set(Double.NaN);
+            row.amount.set(Double.NaN);
+        }
+        statusLabel.setText(status);
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Recomputes the table for a base currency and an amount. Must be called on the JavaFX application thread.
+     * @param fromCode The code of the base currency, or null if none is selected.
+     * @param amountText The amount entered by the user, with the separators of the locale, or an empty string.
+     */
+    public void update(String fromCode, String amountText) {
+        int fromOrdinal = fromCode == null ? -1 : registry.getOrdinal(fromCode);
+        RateMatrix matrix = Currencies.getRateMatrix();
+        if (fromOrdinal == -1) {
+            clear("Select a currency to convert from");
+            return;
+        }
+        if (matrix == null || matrix.size() != rowsByOrdinal.length) {
+            clear("The conversion rates are not available yet");
+            return;
+        }
+        profiler.start();
+        long start = Metrics.startTime();
+        amount = parser.parse(amountText);
+        BulkConverter.convert(amount == null ? Double.NaN : amount.doubleValue(), fromOrdinal, matrix, rates, amounts);
+        for (Row row : rowsByOrdinal) {
+            row.rate.set(rates[row.ordinal]);
+            row.amount.set(amounts[row.ordinal]);
+        }
+        if (!table.getSortOrder().isEmpty()) {
+            table.sort();
+        }
+        statusLabel.setText(amount == null ? "Rates from " + fromCode : amountText + " " + fromCode + " in every currency");
+        COMPUTE_LATENCY.recordSince(start);
+        profiler.stop();
+    }
+
+    /**
+     * Shows the window, or brings it to the front if it is already shown.
+     */
+    public void show() {
+        stage.show();
+        stage.toFront();
+    }
+
+    /**
+     * @return Returns true if the window is shown.
+     */
+    public boolean isShowing() {
+        return stage.isShowing();
+    }
+}
@@ -0,0 +1,166 @@
+package Code;
+
+/**
+ * This class converts whole amounts with scaled long arithmetic instead of BigDecimal.
+ * The result is exactly the one Currencies.convert() computes with BigDecimal: the product of the amount and the exact
+ * binary value of the rate, rounded HALF_UP to two significant decimals after the leading zeros of the fraction.
+ * The conversion allocates nothing. When the numbers do not fit in a long, convert() returns false and the caller
+ * falls back to BigDecimal.
+ */
+public final class FixedPointConverter {
+
+    /**
+     * A converted amount, represented as an unscaled value and a scale like BigDecimal.
+     * The value of the amount is unscaledValue * 10^-scale. Instances are mutable so they can be reused.
+     */
+    public static final class ScaledAmount {
+        private long unscaledValue;
+        private int scale;
+
+        /**
+         * @return Returns the unscaled value of the amount.
+         */
+        public long getUnscaledValue() {
+            return unscaledValue;
+        }
+
+        /**
+         * @return Returns the number of decimal places of the amount.
+         */
+        public int getScale() {
+            return scale;
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L, 10000000000L,
+            100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L,
+            10000000000000000L, 100000000000000000L, 1000000000000000000L
+    };
+
+    /**
+     * This class only has static methods.
+     */
+    private FixedPointConverter() {
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Stores integerPart * 10^scale + fraction in the result, unless it overflows.
+     * @param integerPart The integer part of the amount.
+     * @param scale The number of decimal places.
+     * @param fraction The decimal places as a whole number. It may be 10^scale after rounding up.
+     * @param result The result to be set.
+     * @return Returns false if the amount does not fit in a long.
+     */
+    private static boolean store(long integerPart, int scale, long fraction, ScaledAmount result) {
+        if (scale >= POWERS_OF_TEN.length) {
+            if (integerPart != 0) {
+                return false;
+            }
+            result.unscaledValue = fraction;
+        }
+        else {
+            long power = POWERS_OF_TEN[scale];
+            if (integerPart > (Long.MAX_VALUE - fraction) / power) {
+                return false;
+            }
+            result.unscaledValue = integerPart * power + fraction;
+        }
+        result.scale = scale;
+        return true;
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Converts a whole amount with the given conversion rate.
+     * The rate is m * 2^-k exactly, so the product a * m * 2^-k has exactly k decimal places. The integer part and
+     * the fraction are split with 128 bit arithmetic, and the decimal places are generated one at a time by
+     * multiplying the fraction by ten. As in Currencies.round(), the leading zeros of the fraction are kept and the
+     * next three decimal places are rounded HALF_UP to two. A fraction of fewer than three decimal places is kept as is.
+     * @param amount The amount to be converted, not negative.
+     * @param conversionRate The conversion rate from the base to target currency.
+     * @param result The result to be set.
+     * @return Returns false if the conversion has to be performed with BigDecimal, in which case result is unchanged.
+     */
+    public static boolean convert(long amount, double conversionRate, ScaledAmount result) {
+        if (amount < 0 || !(conversionRate >= 0) || conversionRate == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+        if (amount == 0 || conversionRate == 0) {
+            result.unscaledValue = 0;
+            result.scale = 0;
+            return true;
+        }
+        long bits = Double.doubleToRawLongBits(conversionRate);
+        int exponent = (int) (bits >>> 52) & 0x7ff;
+        if (exponent == 0) {
+            return false;
+        }
+        long significand = (bits & 0xfffffffffffffL) | 0x10000000000000L;
+        int trailingZeros = Long.numberOfTrailingZeros(significand);
+        significand >>>= trailingZeros;
+        int k = 1075 - exponent - trailingZeros;
+        if (k <= 0 || k > 63) {
+            return false;
+        }
+        long high = Math.multiplyHigh(amount, significand);
+        long low = amount * significand;
+        if ((high >>> (k - 1)) != 0) {
+            return false;
+        }
+        long integerPart = (high << (64 - k)) | (low >>> k);
+        long mask = (1L << k) - 1;
+        long fraction = low & mask;
+        if (integerPart == 0) {
+            long scaledHigh = Math.multiplyHigh(fraction, 1000000L);
+            long scaledLow = fraction * 1000000L;
+            if (scaledHigh == 0 && Long.compareUnsigned(scaledLow, 1L << k) < 0) {
+                return false;
+            }
+        }
+        if (k < 3) {
+            long digits = 0;
+            for (int i = 0; i < k; i++) {
+                long digitHigh = Math.multiplyHigh(fraction, 10L);
+                long digitLow = fraction * 10L;
+                digits = digits * 10 + ((digitHigh << (64 - k)) | (digitLow >>> k));
+                fraction = digitLow & mask;
+            }
+            return store(integerPart, k, digits, result);
+        }
+        int zeros = 0;
+        long digit;
+        while (true) {
+            long digitHigh = Math.multiplyHigh(fraction, 10L);
+            long digitLow = fraction * 10L;
+            digit = (digitHigh << (64 - k)) | (digitLow >>> k);
+            fraction = digitLow & mask;
+            if (digit != 0 || zeros == k - 3) {
+                break;
+            }
+            zeros++;
+        }
+        long digits = digit;
+        for (int i = 0; i < 2; i++) {
+            long digitHigh = Math.multiplyHigh(fraction, 10L);
+            long digitLow = fraction * 10L;
+            digit = (digitHigh << (64 - k)) | (digitLow >>> k);
+            fraction = digitLow & mask;
+            if (i == 0) {
+                digits = digits * 10 + digit;
+            }
+        }
+        if (digit >= 5) {
+            digits++;
+        }
+        return store(integerPart, zeros + 2, digits, result);
+    }
+}
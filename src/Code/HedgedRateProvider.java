@@ -0,0 +1,500 @@
+package Code;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a rate provider that spreads every request over several providers to cut the tail latency and to
+ * survive the failure of any of them.
+ * A request is sent to the first healthy provider. If it has not answered after its 95th percentile latency, a hedged
+ * request is sent to the next healthy provider; the first answer wins and the other request is cancelled by
+ * interrupting it. Since only the slowest 5% of requests are hedged, the extra load on the providers stays small, and
+ * it is capped at 'currency.provider.maxHedgeRatio' (10% by default) of the requests. A provider that fails is
+ * failed over to the next one right away.
+ * The health of every provider is tracked by a circuit breaker: after 'currency.provider.failureThreshold' (5)
+ * consecutive failures the provider is skipped for 'currency.provider.openSeconds' (30) seconds, then a single trial
+ * request decides whether it is used again. Until a provider has enough latency samples, requests are hedged after
+ * 'currency.provider.hedgeDelayMillis' (500) milliseconds.
+ * Rates are hedged one server request at a time: a list of pairs is split into batches of the smallest
+ * getMaxPairsPerRequest() of the providers, and every batch is a request of its own. The latency samples are therefore
+ * those of single server requests whatever the number of pairs asked for, and a slow batch of a full refresh only
+ * repeats that batch on the next provider, not the whole refresh.
+ */
+public class HedgedRateProvider implements RateProvider {
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum CircuitState {
+        /** The provider is used. */
+        CLOSED,
+        /** The provider failed repeatedly and is skipped. */
+        OPEN,
+        /** The provider is given a single trial request. */
+        HALF_OPEN
+    }
+
+    /**
+     * A request to a single provider.
+     * @param <T> The type of the result.
+     */
+    private interface Attempt<T> {
+        /**
+         * @param provider The provider.
+         * @return Returns the result, or null if the provider could not answer.
+         * @throws IOException Thrown if the response cannot be read or the thread is interrupted.
+         */
+        T run(RateProvider provider) throws IOException;
+    }
+
+    /**
+     * The outcome of an attempt, passed from the thread running it to the thread waiting for it.
+     * @param <T> The type of the result.
+     */
+    private static final class Outcome<T> {
+        private final ProviderHealth health;
+        private final T result;
+        private final IOException error;
+        private final long latencyNanos;
+
+        /**
+         * Parameterized constructor.
+         * @param health The health of the provider.
+         * @param result The result, or null if the attempt failed.
+         * @param error The error of the attempt, or null if there is none.
+         * @param latencyNanos The duration of the attempt.
+         */
+        private Outcome(ProviderHealth health, T result, IOException error, long latencyNanos) {
+            this.health = health;
+            this.result = result;
+            this.error = error;
+            this.latencyNanos = latencyNanos;
+        }
+    }
+
+    /**
+     * The health of a provider: its circuit breaker, its recent latencies and its request counts.
+     */
+    public static final class ProviderHealth {
+        private final RateProvider provider;
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int latencyCount;
+        private int nextLatency;
+        private long p95Nanos = DEFAULT_HEDGE_DELAY_NANOS;
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+        private long requests;
+        private long failures;
+        private long cancellations;
+
+        /**
+         * Parameterized constructor.
+         * @param provider The provider.
+         */
+        private ProviderHealth(RateProvider provider) {
+            this.provider = provider;
+        }
+
+        /**
+         * Records a latency sample and recomputes the 95th percentile every few samples.
+         * @param latencyNanos The latency.
+         */
+        private void addLatency(long latencyNanos) {
+            latencies[nextLatency] = latencyNanos;
+            nextLatency = (nextLatency + 1) % latencies.length;
+            latencyCount++;
+            if (latencyCount >= MIN_LATENCY_SAMPLES && latencyCount % 8 == 0) {
+                long[] sorted = Arrays.copyOf(latencies, Math.min(latencyCount, latencies.length));
+                Arrays.sort(sorted);
+                p95Nanos = sorted[(int) Math.ceil(sorted.length * 0.95) - 1];
+            }
+        }
+
+        /**
+         * Asks the circuit breaker whether a request may be sent. An open circuit becomes half open once it has been
+         * open long enough, and then lets a single trial request through.
+         * @param now The current time, from System.nanoTime().
+         * @return Returns true if a request may be sent, in which case it must be recorded.
+         */
+        private synchronized boolean tryAcquire(long now) {
+            if (state == CircuitState.OPEN && now - openedAt >= OPEN_NANOS) {
+                state = CircuitState.HALF_OPEN;
+            }
+            if (state == CircuitState.HALF_OPEN) {
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+            }
+            else if (state == CircuitState.OPEN) {
+                return false;
+            }
+            requests++;
+            return true;
+        }
+
+        /**
+         * Records a successful request and closes the circuit.
+         * @param latencyNanos The latency of the request.
+         */
+        private synchronized void recordSuccess(long latencyNanos) {
+            addLatency(latencyNanos);
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            state = CircuitState.CLOSED;
+        }
+
+        /**
+         * Records a failed request and opens the circuit after too many consecutive failures or a failed trial.
+         */
+        private synchronized void recordFailure() {
+            failures++;
+            consecutiveFailures++;
+            if (state == CircuitState.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD) {
+                state = CircuitState.OPEN;
+                openedAt = System.nanoTime();
+            }
+            trialInFlight = false;
+        }
+
+        /**
+         * Records a request that was cancelled because another provider answered first.
+         * Its duration is a lower bound of its latency and is recorded as a sample, so a slow provider is not
+         * mistaken for a fast one only because its slow requests are always cancelled.
+         * @param latencyNanos The time the request had been running for.
+         */
+        private synchronized void recordCancelled(long latencyNanos) {
+            cancellations++;
+            addLatency(latencyNanos);
+            trialInFlight = false;
+        }
+
+        /**
+         * @return Returns the delay after which a request to this provider is hedged, in nanoseconds.
+         */
+        private synchronized long getHedgeDelayNanos() {
+            return p95Nanos;
+        }
+
+        /**
+         * @return Returns the name of the provider.
+         */
+        public String getName() {
+            return provider.getName();
+        }
+
+        /**
+         * @return Returns the state of the circuit breaker.
+         */
+        public synchronized CircuitState getState() {
+            return state;
+        }
+
+        /**
+         * @return Returns the number of requests sent to the provider.
+         */
+        public synchronized long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return Returns the number of failed requests.
+         */
+        public synchronized long getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return Returns the number of requests cancelled because another provider answered first.
+         */
+        public synchronized long getCancellations() {
+            return cancellations;
+        }
+
+        /**
+         * @return Returns the 95th percentile of the recent latencies, in milliseconds.
+         */
+        public synchronized double getP95Millis() {
+            return p95Nanos / 1e6;
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int LATENCY_WINDOW = 128;
+    private static final int MIN_LATENCY_SAMPLES = 16;
+    private static final long DEFAULT_HEDGE_DELAY_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong("currency.provider.hedgeDelayMillis", 500));
+    private static final int FAILURE_THRESHOLD = Integer.getInteger("currency.provider.failureThreshold", 5);
+    private static final long OPEN_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("currency.provider.openSeconds", 30));
+    private static final double MAX_HEDGE_RATIO =
+            Double.parseDouble(System.getProperty("currency.provider.maxHedgeRatio", "0.1"));
+    private static final Metrics.Counter HEDGES = Metrics.counter("provider.hedges");
+    private static final Metrics.Counter FAILOVERS = Metrics.counter("provider.failovers");
+    private static final ExecutorService EXECUTOR;
+
+    static {
+        AtomicInteger count = new AtomicInteger();
+        EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "rate-provider-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final List<ProviderHealth> health;
+    private final int maxPairsPerRequest;
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    /**
+     * Parameterized constructor.
+     * @param providers The providers, in order of preference.
+     */
+    public HedgedRateProvider(List<? extends RateProvider> providers) {
+        if (providers.isEmpty()) {
+            throw new IllegalArgumentException("At least one rate provider is required");
+        }
+        List<ProviderHealth> list = new ArrayList<>(providers.size());
+        int maxPairs = Integer.MAX_VALUE;
+        for (RateProvider provider : providers) {
+            list.add(new ProviderHealth(provider));
+            maxPairs = Math.min(maxPairs, Math.max(1, provider.getMaxPairsPerRequest()));
+        }
+        this.health = Collections.unmodifiableList(list);
+        this.maxPairsPerRequest = maxPairs;
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Sends an attempt to the next provider whose circuit breaker lets it through.
+     * @param attempt The attempt.
+     * @param completion The completion service the outcome is delivered to.
+     * @param inFlight The provider of every attempt in flight, the attempt is added to it.
+     * @param next The index of the first provider to consider.
+     * @param <T> The type of the result.
+     * @return Returns the index of the provider after the one used, or the number of providers if none could be used.
+     */
+    private <T> int launch(Attempt<T> attempt, CompletionService<Outcome<T>> completion,
+                           Map<Future<Outcome<T>>, ProviderHealth> inFlight, int next) {
+        while (next < health.size()) {
+            ProviderHealth providerHealth = health.get(next++);
+            long start = System.nanoTime();
+            if (providerHealth.tryAcquire(start)) {
+                inFlight.put(completion.submit(() -> {
+                    T result = null;
+                    IOException error = null;
+                    try {
+                        result = attempt.run(providerHealth.provider);
+                    } catch (IOException e) {
+                        error = e;
+                    } catch (RuntimeException e) {
+                        error = new IOException(providerHealth.getName() + " failed", e);
+                    }
+                    return new Outcome<>(providerHealth, result, error, System.nanoTime() - start);
+                }), providerHealth);
+                return next;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Cancels the attempts that are still in flight and records them as cancelled.
+     * @param inFlight The provider of every attempt in flight.
+     * @param startTimes The time every attempt was sent at.
+     * @param <T> The type of the result.
+     */
+    private static <T> void cancelAll(Map<Future<Outcome<T>>, ProviderHealth> inFlight,
+                                      Map<ProviderHealth, Long> startTimes) {
+        long now = System.nanoTime();
+        for (Map.Entry<Future<Outcome<T>>, ProviderHealth> entry : inFlight.entrySet()) {
+            entry.getKey().cancel(true);
+            Long start = startTimes.get(entry.getValue());
+            entry.getValue().recordCancelled(start == null ? 0 : now - start);
+        }
+        inFlight.clear();
+    }
+
+    /**
+     * Runs an attempt on the providers, hedging and failing over as described in the class comment.
+     * @param attempt The attempt.
+     * @param <T> The type of the result.
+     * @return Returns the first result, or null if every provider failed or is unavailable.
+     * @throws IOException Thrown with the last error if every provider failed with one, or if the thread is
+     * interrupted.
+     */
+    private <T> T execute(Attempt<T> attempt) throws IOException {
+        long requestNumber = executions.incrementAndGet();
+        CompletionService<Outcome<T>> completion = new ExecutorCompletionService<>(EXECUTOR);
+        Map<Future<Outcome<T>>, ProviderHealth> inFlight = new HashMap<>();
+        Map<ProviderHealth, Long> startTimes = new HashMap<>();
+        int next = launch(attempt, completion, inFlight, 0);
+        if (inFlight.isEmpty()) {
+            return null;
+        }
+        ProviderHealth primary = health.get(next - 1);
+        startTimes.put(primary, System.nanoTime());
+        long hedgeAt = System.nanoTime() + primary.getHedgeDelayNanos();
+        boolean hedged = false;
+        IOException lastError = null;
+        try {
+            while (!inFlight.isEmpty()) {
+                Future<Outcome<T>> done;
+                if (!hedged && inFlight.size() == 1 && next < health.size()) {
+                    done = completion.poll(hedgeAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (done == null) {
+                        hedged = true;
+                        if (hedges.get() < MAX_HEDGE_RATIO * requestNumber) {
+                            next = launch(attempt, completion, inFlight, next);
+                            if (inFlight.size() > 1) {
+                                startTimes.put(health.get(next - 1), System.nanoTime());
+                                hedges.incrementAndGet();
+                                HEDGES.increment();
+                            }
+                        }
+                        continue;
+                    }
+                }
+                else {
+                    done = completion.take();
+                }
+                inFlight.remove(done);
+                Outcome<T> outcome = done.get();
+                if (outcome.result != null) {
+                    outcome.health.recordSuccess(outcome.latencyNanos);
+                    cancelAll(inFlight, startTimes);
+                    return outcome.result;
+                }
+                outcome.health.recordFailure();
+                if (outcome.error != null) {
+                    lastError = outcome.error;
+                }
+                if (inFlight.isEmpty() && next < health.size()) {
+                    next = launch(attempt, completion, inFlight, next);
+                    if (!inFlight.isEmpty()) {
+                        ProviderHealth failover = health.get(next - 1);
+                        startTimes.put(failover, System.nanoTime());
+                        hedgeAt = System.nanoTime() + failover.getHedgeDelayNanos();
+                        hedged = false;
+                        FAILOVERS.increment();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelAll(inFlight, startTimes);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate providers");
+        } catch (ExecutionException e) {
+            cancelAll(inFlight, startTimes);
+            throw new IOException(e.getCause());
+        }
+        if (lastError != null) {
+            throw lastError;
+        }
+        return null;
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * @return Returns the names of the providers.
+     */
+    @Override
+    public String getName() {
+        StringBuilder name = new StringBuilder("hedged(");
+        for (int i = 0; i < health.size(); i++) {
+            name.append(i == 0 ? "" : ", ").append(health.get(i).getName());
+        }
+        return name.append(')').toString();
+    }
+
+    /**
+     * Fetches the conversion rates one batch of getMaxPairsPerRequest() pairs at a time, every batch from the first
+     * provider to answer it. Fetching stops at the first batch that every provider failed.
+     * @param pairs The currency pairs.
+     * @param rates The map the fetched rates are stored in.
+     * @return Returns false if every provider failed or is unavailable for some batch.
+     * @throws IOException Handles execute().
+     */
+    @Override
+    public boolean fetchRates(List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates) throws IOException {
+        for (int start = 0; start < pairs.size(); start += maxPairsPerRequest) {
+            int end = pairs.size() - start <= maxPairsPerRequest ? pairs.size() : start + maxPairsPerRequest;
+            List<CurrencyPair> batch = pairs.subList(start, end);
+            Map<CurrencyPair, Double> fetched = execute(provider -> {
+                Map<CurrencyPair, Double> providerRates = new HashMap<>();
+                return provider.fetchRates(batch, providerRates) ? providerRates : null;
+            });
+            if (fetched == null) {
+                return false;
+            }
+            rates.putAll(fetched);
+        }
+        return true;
+    }
+
+    /**
+     * @return Returns the smallest number of pairs per request of the providers, the size of the hedged batches.
+     */
+    @Override
+    public int getMaxPairsPerRequest() {
+        return maxPairsPerRequest;
+    }
+
+    /**
+     * Fetches the currency metadata from the first provider to answer.
+     * @return Returns the fields of every currency by currency code, or null if every provider failed or is
+     * unavailable.
+     * @throws IOException Handles execute().
+     */
+    @Override
+    public Map<String, Map<String, String>> fetchCurrencies() throws IOException {
+        return execute(RateProvider::fetchCurrencies);
+    }
+
+    /**
+     * @return Returns the health of every provider, in order of preference.
+     */
+    public List<ProviderHealth> getHealth() {
+        return health;
+    }
+
+    /**
+     * @return Returns the number of requests served, counting every batch of rates as a request.
+     */
+    public long getRequests() {
+        return executions.get();
+    }
+
+    /**
+     * @return Returns the number of requests that were hedged.
+     */
+    public long getHedges() {
+        return hedges.get();
+    }
+}
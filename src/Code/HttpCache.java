@@ -0,0 +1,434 @@
+package Code;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * This class is an on-disk cache of the HTTP responses received by Connection, which survives restarts.
+ * Responses with status 200 are stored with their validators, the 'ETag' and 'Last-Modified' headers, and the time
+ * until which they are fresh, taken from the 'max-age' directive of 'Cache-Control' or from 'Expires'. A fresh
+ * response is served without contacting the server; a stale one is revalidated with 'If-None-Match' and
+ * 'If-Modified-Since', so an unchanged resource costs a '304 Not Modified' instead of a full transfer. Responses marked
+ * 'no-store', and responses that are neither fresh nor have a validator, are not stored; 'no-cache' responses are
+ * stored but revalidated every time.
+ * Every response is stored in its own file, named after the SHA-256 hash of its URL so that the API key in the URL is
+ * not written to the file name, and written to a temporary file first and then moved in place. The files take at most
+ * 'currency.http.cacheBytes' bytes (16 MB by default) in 'currency.http.cacheDir', '~/.currency-converter/http-cache'
+ * by default; when the bound is exceeded the least recently used responses are evicted. The recency survives restarts
+ * as the modification time of the files. Temporary files left behind by a process that stopped while writing are
+ * deleted when the cache is opened.
+ */
+public final class HttpCache {
+
+    /**
+     * A cached response: its body, its validators and the time until which it is fresh.
+     */
+    public static final class Entry {
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private final long storedAt;
+        private final long expiresAt;
+
+        /**
+         * Parameterized constructor.
+         * @param body The body of the response, decoded.
+         * @param etag The 'ETag' header, or an empty string.
+         * @param lastModified The 'Last-Modified' header, or an empty string.
+         * @param storedAt The time the response was received at, in milliseconds since the epoch.
+         * @param expiresAt The time until which the response is fresh, in milliseconds since the epoch.
+         */
+        private Entry(byte[] body, String etag, String lastModified, long storedAt, long expiresAt) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.storedAt = storedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * @return Returns the body of the response.
+         */
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return Returns the 'ETag' header of the response, or an empty string if it had none.
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * @return Returns the 'Last-Modified' header of the response, or an empty string if it had none.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @param now The current time, in milliseconds since the epoch.
+         * @return Returns true if the response may be used without revalidating it.
+         */
+        public boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int MAGIC = 0x43434843;
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".entry";
+    private static final String TEMPORARY_PREFIX = "response";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("currency.http.cacheDir",
+            Paths.get(System.getProperty("user.home"), ".currency-converter", "http-cache").toString()));
+    private static final long DEFAULT_MAX_BYTES = Long.getLong("currency.http.cacheBytes", 16L << 20);
+    private static final Metrics.Counter HITS = Metrics.counter("http.cache.hits");
+    private static final Metrics.Counter REVALIDATIONS = Metrics.counter("http.cache.revalidations");
+    private static final Metrics.Counter EVICTIONS = Metrics.counter("http.cache.evictions");
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Path directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Parameterized constructor.
+     * Indexes the responses already stored in the directory, least recently used first, and deletes the temporary files
+     * left behind by an interrupted write.
+     * @param directory The directory of the cache. It is created if it does not exist.
+     * @param maxBytes The maximum number of bytes of the stored responses.
+     * @throws IOException Handles the Files methods.
+     */
+    public HttpCache(Path directory, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, TEMPORARY_PREFIX + "*" + TEMPORARY_SUFFIX)) {
+            for (Path file : stream) {
+                Files.deleteIfExists(file);
+            }
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Map<Path, FileTime> times = new LinkedHashMap<>();
+        for (Path file : files) {
+            times.put(file, Files.getLastModifiedTime(file));
+        }
+        files.sort((a, b) -> times.get(a).compareTo(times.get(b)));
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long size = Files.size(file);
+            sizes.put(name.substring(0, name.length() - SUFFIX.length()), size);
+            totalBytes += size;
+        }
+        evict();
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the key of a URL, the hexadecimal SHA-256 hash of it.
+     * @param uri The URL.
+     * @return Returns the key.
+     */
+    private static String key(URI uri) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(uri.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the time until which a response is fresh, from its 'Cache-Control', 'Age' and 'Expires' headers.
+     * @param headers The headers of the response.
+     * @param now The time the response was received at, in milliseconds since the epoch.
+     * @param defaultLifetime The freshness lifetime used if the headers do not give one, in milliseconds.
+     * @return Returns the time until which the response is fresh, or Long.MIN_VALUE if it must not be stored.
+     */
+    private static long freshUntil(HttpHeaders headers, long now, long defaultLifetime) {
+        long maxAgeSeconds = -1;
+        for (String value : headers.allValues("Cache-Control")) {
+            for (String directive : value.split(",")) {
+                String name = directive.strip().toLowerCase(Locale.ROOT);
+                if (name.equals("no-store")) {
+                    return Long.MIN_VALUE;
+                }
+                if (name.equals("no-cache")) {
+                    return now;
+                }
+                if (name.startsWith("max-age=")) {
+                    try {
+                        maxAgeSeconds = Long.parseLong(name.substring("max-age=".length()).replace("\"", ""));
+                    } catch (NumberFormatException e) {
+                        maxAgeSeconds = 0;
+                    }
+                }
+            }
+        }
+        if (maxAgeSeconds >= 0) {
+            long ageSeconds = 0;
+            Optional<String> age = headers.firstValue("Age");
+            if (age.isPresent()) {
+                try {
+                    ageSeconds = Long.parseLong(age.get().strip());
+                } catch (NumberFormatException e) {
+                    ageSeconds = 0;
+                }
+            }
+            return now + Math.max(0, maxAgeSeconds - ageSeconds) * 1000;
+        }
+        Optional<String> expires = headers.firstValue("Expires");
+        if (expires.isPresent()) {
+            try {
+                return ZonedDateTime.parse(expires.get().strip(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                return now;
+            }
+        }
+        return now + defaultLifetime;
+    }
+
+    /**
+     * Reads a stored response.
+     * @param file The file of the response.
+     * @return Returns the response.
+     * @throws IOException Thrown if the file cannot be read or is not a cached response.
+     */
+    private static Entry read(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(Files.newInputStream(file))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a cached response: " + file);
+            }
+            long storedAt = input.readLong();
+            long expiresAt = input.readLong();
+            String etag = input.readUTF();
+            String lastModified = input.readUTF();
+            byte[] body = new byte[input.readInt()];
+            input.readFully(body);
+            return new Entry(body, etag, lastModified, storedAt, expiresAt);
+        }
+    }
+
+    /**
+     * Writes a response to its file and indexes it as the most recently used one.
+     * @param key The key of the response.
+     * @param entry The response.
+     * @throws IOException Handles the Files methods.
+     */
+    private void write(String key, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.body.length + 128);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(entry.storedAt);
+            output.writeLong(entry.expiresAt);
+            output.writeUTF(entry.etag);
+            output.writeUTF(entry.lastModified);
+            output.writeInt(entry.body.length);
+            output.write(entry.body);
+        }
+        Path temporary = Files.createTempFile(directory, TEMPORARY_PREFIX, TEMPORARY_SUFFIX);
+        try {
+            Files.write(temporary, bytes.toByteArray());
+            Files.move(temporary, directory.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temporary);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        Long previous = sizes.put(key, (long) bytes.size());
+        totalBytes += bytes.size() - (previous == null ? 0 : previous);
+        evict();
+    }
+
+    /**
+     * Deletes a stored response.
+     * @param key The key of the response.
+     */
+    private void delete(String key) {
+        Long size = sizes.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        try {
+            Files.deleteIfExists(directory.resolve(key + SUFFIX));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes the least recently used responses until the stored responses fit in the size bound.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = sizes.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            EVICTIONS.increment();
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey() + SUFFIX));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Opens the cache in the default directory, 'currency.http.cacheDir', unless caching is disabled with
+     * '-Dcurrency.http.cache=false'.
+     * @return Returns the cache, or null if caching is disabled or the directory cannot be used.
+     */
+    public static HttpCache openDefault() {
+        if (!Boolean.parseBoolean(System.getProperty("currency.http.cache", "true"))) {
+            return null;
+        }
+        try {
+            return new HttpCache(DEFAULT_DIRECTORY, DEFAULT_MAX_BYTES);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the stored response of a URL and marks it as the most recently used one.
+     * A stored response that cannot be read is deleted.
+     * @param uri The URL of the request.
+     * @return Returns the stored response, fresh or not, or null if there is none.
+     */
+    public synchronized Entry get(URI uri) {
+        String key = key(uri);
+        if (sizes.get(key) == null) {
+            return null;
+        }
+        Path file = directory.resolve(key + SUFFIX);
+        try {
+            Entry entry = read(file);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        } catch (IOException e) {
+            delete(key);
+            return null;
+        }
+    }
+
+    /**
+     * Records that a stored response was served because it was fresh.
+     */
+    public void recordHit() {
+        HITS.increment();
+    }
+
+    /**
+     * Stores a response with status 200, or deletes the stored response of its URL if the new one must not be stored.
+     * @param uri The URL of the request.
+     * @param headers The headers of the response.
+     * @param body The body of the response, decoded.
+     * @throws IOException Handles the Files methods.
+     */
+    public synchronized void put(URI uri, HttpHeaders headers, byte[] body) throws IOException {
+        String key = key(uri);
+        long now = System.currentTimeMillis();
+        long expiresAt = freshUntil(headers, now, 0);
+        String etag = headers.firstValue("ETag").orElse("");
+        String lastModified = headers.firstValue("Last-Modified").orElse("");
+        boolean hasValidator = !etag.isEmpty() || !lastModified.isEmpty();
+        if (expiresAt == Long.MIN_VALUE || (expiresAt <= now && !hasValidator) || body.length > maxBytes) {
+            delete(key);
+            return;
+        }
+        write(key, new Entry(body, etag, lastModified, now, expiresAt));
+    }
+
+    /**
+     * Refreshes a stored response after the server answered a revalidation with '304 Not Modified'.
+     * The freshness and validators sent with the 304 replace the stored ones; without a freshness in the 304, the
+     * stored response keeps its original freshness lifetime.
+     * @param uri The URL of the request.
+     * @param entry The stored response that was revalidated.
+     * @param headers The headers of the 304 response.
+     * @return Returns the refreshed response.
+     * @throws IOException Handles the Files methods.
+     */
+    public synchronized Entry update(URI uri, Entry entry, HttpHeaders headers) throws IOException {
+        REVALIDATIONS.increment();
+        long now = System.currentTimeMillis();
+        long expiresAt = freshUntil(headers, now, Math.max(0, entry.expiresAt - entry.storedAt));
+        Entry updated = new Entry(entry.body, headers.firstValue("ETag").orElse(entry.etag),
+                headers.firstValue("Last-Modified").orElse(entry.lastModified), now,
+                expiresAt == Long.MIN_VALUE ? now : expiresAt);
+        if (expiresAt == Long.MIN_VALUE) {
+            delete(key(uri));
+        }
+        else {
+            write(key(uri), updated);
+        }
+        return updated;
+    }
+
+    /**
+     * @return Returns the number of bytes of the stored responses.
+     */
+    public synchronized long getSize() {
+        return totalBytes;
+    }
+
+    /**
+     * @return Returns the number of stored responses.
+     */
+    public synchronized int getEntryCount() {
+        return sizes.size();
+    }
+}
@@ -0,0 +1,165 @@
+package Code;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * This class converts the successive values of an amount being typed, updating the previous result instead of
+ * converting every value from scratch.
+ * It keeps the digits of the last amount and their exact, unrounded product with the rate. When the next amount shares
+ * a prefix of digits with the last one, only the digits after the prefix are handled: removing k trailing digits
+ * subtracts their product with the rate and shifts the product k places, and appending m digits shifts the product m
+ * places and adds the product of the new digits with the rate. Typing or deleting a digit at the end of the amount
+ * therefore costs one multiplication by a single digit and one addition, linear in the length of the amount, and
+ * moving the decimal separator costs nothing but a change of scale. Long results are rounded arithmetically from their
+ * fraction instead of through their decimal string, so no step is quadratic in the length of the amount. The result
+ * is exactly the one of Currencies.convert(BigDecimal, double).
+ * The methods are synchronized so a converter can be used by successive background tasks.
+ */
+public final class IncrementalConverter {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int LONG_RESULT_DIGITS = 64;
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final AmountParser parser;
+    private final StringBuilder digits = new StringBuilder();
+    private final StringBuilder nextDigits = new StringBuilder();
+    private double rate = Double.NaN;
+    private BigDecimal exactRate;
+    private BigDecimal product;
+    private long incrementalUpdates;
+    private long fullConversions;
+
+    /**
+     * Parameterized constructor.
+     * @param parser The parser of the amounts.
+     */
+    public IncrementalConverter(AmountParser parser) {
+        this.parser = parser;
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * @param digits Decimal digits.
+     * @param start The index of the first digit.
+     * @param end The index after the last digit.
+     * @return Returns the digits as a whole number.
+     */
+    private static BigInteger toBigInteger(CharSequence digits, int start, int end) {
+        if (end - start < 19) {
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                value = value * 10 + (digits.charAt(i) - '0');
+            }
+            return BigInteger.valueOf(value);
+        }
+        return new BigInteger(digits.subSequence(start, end).toString());
+    }
+
+    /**
+     * Rounds a converted amount like Currencies.round(). A long amount of at least 1 is rounded from its fraction:
+     * the leading zeros of the fraction and the next three digits are kept, except that the last three digits are
+     * always kept, and the last kept digit is rounded HALF_UP, which may carry into the integer part.
+     * @param value The unrounded converted amount, not negative.
+     * @return Returns the rounded amount.
+     */
+    private static BigDecimal round(BigDecimal value) {
+        if (value.precision() <= LONG_RESULT_DIGITS || value.compareTo(BigDecimal.ONE) < 0) {
+            return Currencies.round(value);
+        }
+        int scale = value.scale();
+        if (scale < 3) {
+            return value;
+        }
+        BigDecimal integerPart = value.setScale(0, RoundingMode.DOWN);
+        BigDecimal fraction = value.subtract(integerPart);
+        int leadingZeros = fraction.signum() == 0 ? scale : scale - fraction.precision();
+        int kept = Math.min(leadingZeros, scale - 3) + 3;
+        BigDecimal roundedFraction = fraction.setScale(kept, RoundingMode.DOWN).setScale(kept - 1, RoundingMode.HALF_UP);
+        return integerPart.add(roundedFraction);
+    }
+
+    /**
+     * Updates the product of the digits with the rate from the product of the previous digits.
+     * @param prefix The number of leading digits the previous and the next digits have in common.
+     */
+    private void updateProduct(int prefix) {
+        int removed = digits.length() - prefix;
+        if (removed > 0) {
+            BigDecimal removedProduct = exactRate.multiply(new BigDecimal(toBigInteger(digits, prefix, digits.length())));
+            product = product.subtract(removedProduct).scaleByPowerOfTen(-removed);
+        }
+        int appended = nextDigits.length() - prefix;
+        if (appended > 0) {
+            BigDecimal appendedProduct = exactRate.multiply(new BigDecimal(toBigInteger(nextDigits, prefix, nextDigits.length())));
+            product = product.scaleByPowerOfTen(appended).add(appendedProduct);
+        }
+        product = product.setScale(exactRate.scale());
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Converts an amount, reusing the result of the previous call if the rate has not changed.
+     * @param amountText The amount entered by the user.
+     * @param conversionRate The conversion rate from the base to target currency.
+     * @return Returns the converted amount rounded like Currencies.convert(), or null if the text has no digits or is
+     * not a valid amount.
+     */
+    public synchronized BigDecimal convert(CharSequence amountText, double conversionRate) {
+        nextDigits.setLength(0);
+        int scale = parser.scan(amountText, nextDigits);
+        if (scale == -1) {
+            return null;
+        }
+        int prefix = 0;
+        if (conversionRate == rate && product != null) {
+            int limit = Math.min(digits.length(), nextDigits.length());
+            while (prefix < limit && digits.charAt(prefix) == nextDigits.charAt(prefix)) {
+                prefix++;
+            }
+        }
+        if (prefix == 0 || prefix < (digits.length() + nextDigits.length()) / 4) {
+            rate = conversionRate;
+            exactRate = new BigDecimal(conversionRate);
+            product = exactRate.multiply(new BigDecimal(toBigInteger(nextDigits, 0, nextDigits.length())));
+            fullConversions++;
+        }
+        else {
+            updateProduct(prefix);
+            incrementalUpdates++;
+        }
+        digits.setLength(0);
+        digits.append(nextDigits);
+        if (digits.length() == 0) {
+            return null;
+        }
+        if (product.signum() == 0) {
+            return BigDecimal.valueOf(0);
+        }
+        return round(product.movePointLeft(scale));
+    }
+
+    /**
+     * @return Returns the number of conversions that updated the previous result.
+     */
+    public synchronized long getIncrementalUpdates() {
+        return incrementalUpdates;
+    }
+
+    /**
+     * @return Returns the number of conversions computed from scratch.
+     */
+    public synchronized long getFullConversions() {
+        return fullConversions;
+    }
+}
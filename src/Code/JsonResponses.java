@@ -0,0 +1,243 @@
+package Code;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class contains the JSON parsing shared by the application, for the responses of the API server and the
+ * bundled JSON files.
+ * Everything is parsed with Jackson's streaming JsonParser in a single pass, without building a tree or a raw map of
+ * the whole document. The JsonFactory and ObjectMapper are created once and are safe to share between threads.
+ * The API server answers errors with an object such as {"status":400,"error":"..."}; such payloads are detected
+ * both in responses with an error status and in responses with status 200.
+ */
+public final class JsonResponses {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    public static final JsonFactory FACTORY = new JsonFactory();
+    public static final ObjectMapper MAPPER = new ObjectMapper(FACTORY);
+    private static final String ERROR_FIELD = "error";
+
+    /**
+     * This class only has static methods.
+     */
+    private JsonResponses() {
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Moves the parser to the start of the object of a top level field, or leaves it at the start of the document.
+     * @param parser The parser, before the first token.
+     * @param field The name of the top level field, or null for the whole document.
+     * @return Returns true if the parser is at the start of an object.
+     * @throws IOException Handles the JsonParser methods.
+     */
+    private static boolean moveToObject(JsonParser parser, String field) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        if (field == null) {
+            return true;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_OBJECT && name.equals(field)) {
+                return true;
+            }
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    /**
+     * Prints the message of a failed request.
+     * @param request A short description of the request.
+     * @param message The error message sent by the server, or null if there is none.
+     */
+    private static void reportError(String request, String message) {
+        System.err.println(request + " failed" + (message == null ? "" : ": " + message));
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Checks that a request succeeded before its response is parsed.
+     * If the server answered with an error status, the error message of the response body is printed.
+     * @param connection The connection. The request is sent if it has not been sent yet.
+     * @param request A short description of the request, used in the error message.
+     * @return Returns true if the server answered with status 200 and a body.
+     * @throws IOException Handles getResponseCode() and getContent().
+     */
+    public static boolean checkResponse(Connection connection, String request) throws IOException {
+        int responseCode = connection.getResponseCode();
+        if (responseCode == -1) {
+            return false;
+        }
+        InputStream content = connection.getContent();
+        if (responseCode != 200) {
+            String message = content == null ? null : readError(content);
+            reportError(request, "HTTP " + responseCode + (message == null ? "" : ", " + message));
+            return false;
+        }
+        return content != null;
+    }
+
+    /**
+     * Appends a string to a JSON document as a quoted JSON string.
+     * @param output The JSON document.
+     * @param value The string.
+     */
+    public static void appendString(StringBuilder output, String value) {
+        output.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                output.append('\\').append(c);
+            }
+            else if (c < ' ') {
+                output.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                output.append(c);
+            }
+        }
+        output.append('"');
+    }
+
+    /**
+     * Reads the error message of an error payload.
+     * @param content The response body.
+     * @return Returns the value of the top level 'error' field, or null if the body is not a JSON object with one.
+     * @throws IOException Handles the JsonParser methods.
+     */
+    public static String readError(InputStream content) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && name.equals(ERROR_FIELD)) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+        catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a 'compact=ultra' rate response, a JSON object mapping every 'FROM_TO' key to its rate, in a single pass.
+     * The rates are stored directly at the index of their key. Keys that were not requested and rates that are not
+     * positive numbers are ignored, and the entries of 'rates' without a rate in the response are left unchanged.
+     * @param content The response body.
+     * @param keys The index in 'rates' of every requested 'FROM_TO' key.
+     * @param rates The array the parsed rates are stored in.
+     * @return Returns false if the response is an error payload, otherwise true.
+     * @throws IOException Thrown if the response is not a JSON object.
+     */
+    public static boolean parseRates(InputStream content, Map<String, Integer> keys, double[] rates) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid rate response");
+            }
+            String error = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NUMBER_FLOAT || token == JsonToken.VALUE_NUMBER_INT) {
+                    Integer index = keys.get(name);
+                    double rate = parser.getDoubleValue();
+                    if (index != null && rate > 0 && !Double.isInfinite(rate)) {
+                        rates[index] = rate;
+                    }
+                }
+                else if (token == JsonToken.VALUE_STRING && name.equals(ERROR_FIELD)) {
+                    error = parser.getText();
+                }
+                else {
+                    parser.skipChildren();
+                }
+            }
+            if (error != null) {
+                reportError("Rate request", error);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads an object of objects, such as the currencies of 'currencies.json', in a single pass.
+     * Only the scalar fields of the inner objects are read, as text; nested arrays and objects are skipped.
+     * @param content The JSON document.
+     * @param field The name of the top level field holding the object, or null if it is the whole document.
+     * @return Returns a map of the outer keys to the fields of their objects, in document order.
+     * @throws IOException Thrown if the document does not contain the object.
+     */
+    public static Map<String, Map<String, String>> readObjects(InputStream content, String field) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(content)) {
+            if (!moveToObject(parser, field)) {
+                throw new IOException("Invalid JSON document, expected an object" + (field == null ? "" : " in '" + field + "'"));
+            }
+            Map<String, Map<String, String>> objects = new LinkedHashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                Map<String, String> object = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    if (parser.nextToken().isScalarValue()) {
+                        object.put(name, parser.getValueAsString());
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                }
+                objects.put(key, object);
+            }
+            return objects;
+        }
+    }
+
+    /**
+     * Reads a top level string field of a JSON object, such as the key of 'APIKey.json'.
+     * @param content The JSON document.
+     * @param field The name of the field.
+     * @return Returns the value of the field, or null if the document has no such string field.
+     * @throws IOException Thrown if the document is not a JSON object.
+     */
+    public static String readString(InputStream content, String field) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid JSON document, expected an object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.VALUE_STRING && name.equals(field)) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+}
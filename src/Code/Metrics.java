@@ -0,0 +1,386 @@
+package Code;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * This class holds the counters and latency histograms of the hot paths of the application.
+ * Metrics are enabled by starting the application with '-Dcurrency.metrics=true'. Every metric is then registered as
+ * an MXBean named 'Code:type=Metrics,name=...', so it can be watched with JConsole or any other JMX client, and all
+ * metrics are printed to the console every 'currency.metrics.dumpSeconds' seconds if that property is set.
+ * The enabled flag is a constant, so when metrics are disabled the JIT compiler removes the recording code entirely.
+ * When enabled, recording a sample costs a few uncontended atomic additions and the two nanoTime() calls around
+ * the measured code, well below a microsecond.
+ */
+public final class Metrics {
+
+    /**
+     * The management interface of a counter.
+     */
+    public interface CounterMXBean {
+        /**
+         * @return Returns the current value of the counter.
+         */
+        long getCount();
+    }
+
+    /**
+     * The management interface of a latency histogram. All latencies are in microseconds.
+     */
+    public interface LatencyMXBean {
+        /**
+         * @return Returns the number of recorded samples.
+         */
+        long getCount();
+
+        /**
+         * @return Returns the mean latency.
+         */
+        double getMean();
+
+        /**
+         * @return Returns the median latency.
+         */
+        double getP50();
+
+        /**
+         * @return Returns the 90th percentile latency.
+         */
+        double getP90();
+
+        /**
+         * @return Returns the 99th percentile latency.
+         */
+        double getP99();
+
+        /**
+         * @return Returns the 99.9th percentile latency.
+         */
+        double getP999();
+
+        /**
+         * @return Returns the highest latency.
+         */
+        double getMax();
+    }
+
+    /**
+     * A counter that can be incremented by many threads with little contention.
+     */
+    public static final class Counter implements CounterMXBean {
+        private final LongAdder count = new LongAdder();
+
+        /**
+         * Adds one to the counter.
+         */
+        public void increment() {
+            if (ENABLED) {
+                count.increment();
+            }
+        }
+
+        /**
+         * Adds a value to the counter.
+         * @param value The value to be added.
+         */
+        public void add(long value) {
+            if (ENABLED) {
+                count.add(value);
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+    }
+
+    /**
+     * A counter whose value is read from another component, e.g. the hit count of the rate cache.
+     */
+    private static final class Gauge implements CounterMXBean {
+        private final LongSupplier supplier;
+
+        /**
+         * Parameterized constructor.
+         * @param supplier Supplies the value of the gauge.
+         */
+        private Gauge(LongSupplier supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        public long getCount() {
+            return supplier.getAsLong();
+        }
+    }
+
+    /**
+     * A histogram of latencies in nanoseconds with log-linear buckets, in the manner of HdrHistogram.
+     * Values below 2^SUB_BUCKET_BITS nanoseconds have a bucket each. Every further power of two is split into
+     * 2^(SUB_BUCKET_BITS - 1) buckets, so every value is recorded with a relative error below 1%.
+     * Recording is lock free and allocates nothing. The buckets are only allocated if metrics are enabled.
+     */
+    public static final class Latency implements LatencyMXBean {
+        private static final int SUB_BUCKET_BITS = 8;
+        private static final int BUCKET_COUNT = bucketOf(Long.MAX_VALUE) + 1;
+        private final AtomicLongArray buckets = new AtomicLongArray(ENABLED ? BUCKET_COUNT : 0);
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Returns the bucket of a value.
+         * @param value The value, not negative.
+         * @return Returns the index of the bucket.
+         */
+        private static int bucketOf(long value) {
+            if (value < (1L << SUB_BUCKET_BITS)) {
+                return (int) value;
+            }
+            int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+        }
+
+        /**
+         * Returns the highest value recorded in a bucket.
+         * @param bucket The index of the bucket.
+         * @return Returns the highest value of the bucket.
+         */
+        private static long highestValueOf(int bucket) {
+            if (bucket < (1 << SUB_BUCKET_BITS)) {
+                return bucket;
+            }
+            int shift = (bucket >> (SUB_BUCKET_BITS - 1)) - 1;
+            long mantissa = bucket - ((long) shift << (SUB_BUCKET_BITS - 1));
+            return ((mantissa + 1) << shift) - 1;
+        }
+
+        /**
+         * Records the time elapsed since a start time.
+         * @param startNanos The start time returned by Metrics.startTime().
+         */
+        public void recordSince(long startNanos) {
+            if (ENABLED) {
+                record(System.nanoTime() - startNanos);
+            }
+        }
+
+        /**
+         * Records a latency.
+         * @param nanos The latency in nanoseconds.
+         */
+        public void record(long nanos) {
+            if (!ENABLED) {
+                return;
+            }
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            buckets.getAndIncrement(bucketOf(nanos));
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        /**
+         * Returns the latency below which the given share of the samples fall.
+         * @param percentile The percentile, between 0 and 100.
+         * @return Returns the latency in microseconds.
+         */
+        public double getPercentile(double percentile) {
+            long total = 0;
+            long[] counts = new long[buckets.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), maxNanos.get()) / 1000.0;
+                }
+            }
+            return maxNanos.get() / 1000.0;
+        }
+
+        @Override
+        public long getCount() {
+            long samples = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                samples += buckets.get(i);
+            }
+            return samples;
+        }
+
+        @Override
+        public double getMean() {
+            long samples = getCount();
+            return samples == 0 ? 0 : totalNanos.sum() / 1000.0 / samples;
+        }
+
+        @Override
+        public double getP50() {
+            return getPercentile(50);
+        }
+
+        @Override
+        public double getP90() {
+            return getPercentile(90);
+        }
+
+        @Override
+        public double getP99() {
+            return getPercentile(99);
+        }
+
+        @Override
+        public double getP999() {
+            return getPercentile(99.9);
+        }
+
+        @Override
+        public double getMax() {
+            return maxNanos.get() / 1000.0;
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final boolean ENABLED = Boolean.getBoolean("currency.metrics");
+    private static final long DUMP_SECONDS = Long.getLong("currency.metrics.dumpSeconds", 0);
+    private static final Map<String, Object> METRICS = new ConcurrentSkipListMap<>();
+
+    static {
+        if (ENABLED && DUMP_SECONDS > 0) {
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleAtFixedRate(Metrics::dump, DUMP_SECONDS, DUMP_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * This class only has static methods.
+     */
+    private Metrics() {
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Registers a metric under a name, and as an MXBean if metrics are enabled.
+     * A metric registered under the same name before is returned instead, except for gauges, which are replaced.
+     * @param name The name of the metric.
+     * @param metric The metric.
+     * @param replace True if an existing metric of the same name is to be replaced.
+     * @return Returns the registered metric.
+     */
+    private static synchronized Object register(String name, Object metric, boolean replace) {
+        Object existing = METRICS.get(name);
+        if (existing != null && !replace) {
+            return existing;
+        }
+        METRICS.put(name, metric);
+        if (ENABLED) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName("Code:type=Metrics,name=" + ObjectName.quote(name));
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+                server.registerMBean(metric, objectName);
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        return metric;
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the counter registered under a name, creating it on first use.
+     * @param name The name of the counter.
+     * @return Returns the counter.
+     */
+    public static Counter counter(String name) {
+        return (Counter) register(name, new Counter(), false);
+    }
+
+    /**
+     * Returns the latency histogram registered under a name, creating it on first use.
+     * @param name The name of the histogram.
+     * @return Returns the histogram.
+     */
+    public static Latency latency(String name) {
+        return (Latency) register(name, new Latency(), false);
+    }
+
+    /**
+     * Registers a gauge, replacing the gauge registered under the same name before.
+     * @param name The name of the gauge.
+     * @param supplier Supplies the value of the gauge.
+     */
+    public static void gauge(String name, LongSupplier supplier) {
+        register(name, new Gauge(supplier), true);
+    }
+
+    /**
+     * Returns the start time of a measured operation, to be passed to Latency.recordSince().
+     * @return Returns System.nanoTime(), or 0 if metrics are disabled.
+     */
+    public static long startTime() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Prints every metric to the console.
+     */
+    public static void dump() {
+        StringBuilder output = new StringBuilder("Metrics:").append(System.lineSeparator());
+        for (Map.Entry<String, Object> entry : METRICS.entrySet()) {
+            Object metric = entry.getValue();
+            if (metric instanceof Latency) {
+                Latency latency = (Latency) metric;
+                output.append(String.format("  %s: count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                        entry.getKey(), latency.getCount(), latency.getMean(), latency.getP50(), latency.getP99(),
+                        latency.getP999(), latency.getMax()));
+            }
+            else {
+                output.append("  ").append(entry.getKey()).append(": ").append(((CounterMXBean) metric).getCount());
+            }
+            output.append(System.lineSeparator());
+        }
+        System.out.print(output);
+    }
+
+    /**
+     * @return Returns true if metrics have been enabled with the 'currency.metrics' system property.
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+}
@@ -0,0 +1,265 @@
+package Code;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is a bounded cache of conversion rates keyed by currency pair.
+ * Entries expire after a time to live, which defaults to the 60 minute update cadence of the currency data.
+ * When the cache is full, the least recently used entry is evicted.
+ * Concurrent misses for the same pair are merged into a single call of the rate loader.
+ * The time to live and the capacity can be configured with the 'currency.rates.ttlMinutes' and
+ * 'currency.rates.cacheSize' system properties.
+ */
+public class RateCache {
+
+    /**
+     * Loads a conversion rate from the upstream source when it is not present in the cache.
+     */
+    public interface RateLoader {
+        /**
+         * @param pair The pair whose rate is to be loaded.
+         * @return Returns the conversion rate or -1 if the rate could not be obtained.
+         * @throws IOException Thrown if the upstream source cannot be read.
+         */
+        double load(CurrencyPair pair) throws IOException;
+    }
+
+    /**
+     * A cached rate and the time it was stored at.
+     */
+    private static final class CachedRate {
+        private final double rate;
+        private final long storedAt;
+        private final long storedAtMillis;
+
+        private CachedRate(double rate, long storedAt, long storedAtMillis) {
+            this.rate = rate;
+            this.storedAt = storedAt;
+            this.storedAtMillis = storedAtMillis;
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final long DEFAULT_TTL_MINUTES = Long.getLong("currency.rates.ttlMinutes", 60);
+    private static final int DEFAULT_MAX_ENTRIES = Integer.getInteger("currency.rates.cacheSize", 1024);
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final long ttlNanos;
+    private final Map<CurrencyPair, CachedRate> entries;
+    private final ConcurrentHashMap<CurrencyPair, CompletableFuture<Double>> inFlight;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    /**
+     * Default constructor.
+     * Creates a cache configured from the system properties.
+     */
+    public RateCache() {
+        this(DEFAULT_TTL_MINUTES, TimeUnit.MINUTES, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Parameterized constructor.
+     * @param ttl The time to live of a cached rate.
+     * @param unit The unit of the time to live.
+     * @param maxEntries The maximum number of cached pairs.
+     */
+    public RateCache(long ttl, TimeUnit unit, int maxEntries) {
+        ttlNanos = unit.toNanos(ttl);
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+        evictions = new AtomicLong();
+        inFlight = new ConcurrentHashMap<>();
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CurrencyPair, CachedRate> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the cached rate of the pair if it has not expired.
+     * @param pair The currency pair.
+     * @return Returns the cached rate or -1 if the pair is absent or expired.
+     */
+    private double lookup(CurrencyPair pair) {
+        synchronized (entries) {
+            CachedRate entry = entries.get(pair);
+            if (entry == null) {
+                return -1;
+            }
+            if (System.nanoTime() - entry.storedAt > ttlNanos) {
+                entries.remove(pair);
+                return -1;
+            }
+            return entry.rate;
+        }
+    }
+
+    /**
+     * Waits for a load started by another thread and returns its result.
+     * @param future The pending load.
+     * @return Returns the loaded rate.
+     * @throws IOException Rethrows the failure of the other load.
+     */
+    private double await(CompletableFuture<Double> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a conversion rate", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Removes all cached rates.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Returns the rate of the pair, calling the loader only if the pair is not cached.
+     * Rates of -1, i.e. failed loads, are not cached.
+     * @param pair The currency pair.
+     * @param loader Loads the rate on a miss.
+     * @return Returns the conversion rate or -1 if it could not be obtained.
+     * @throws IOException Handles the loader.
+     */
+    public double get(CurrencyPair pair, RateLoader loader) throws IOException {
+        double rate = lookup(pair);
+        if (rate != -1) {
+            hits.incrementAndGet();
+            return rate;
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Double> future = new CompletableFuture<>();
+        CompletableFuture<Double> pending = inFlight.putIfAbsent(pair, future);
+        if (pending != null) {
+            return await(pending);
+        }
+        try {
+            rate = loader.load(pair);
+            if (rate != -1) {
+                put(pair, rate);
+            }
+            future.complete(rate);
+            return rate;
+        }
+        catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+        finally {
+            inFlight.remove(pair, future);
+        }
+    }
+
+    /**
+     * Returns the cached rate of the pair without loading it on a miss.
+     * @param pair The currency pair.
+     * @return Returns the cached rate or -1 if the pair is absent or expired.
+     */
+    public double getIfPresent(CurrencyPair pair) {
+        double rate = lookup(pair);
+        if (rate != -1) {
+            hits.incrementAndGet();
+        }
+        else {
+            misses.incrementAndGet();
+        }
+        return rate;
+    }
+
+    /**
+     * @return Returns the number of entries evicted because the cache was full.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the time the rate of the pair was stored at.
+     * @param pair The currency pair.
+     * @return Returns the time in milliseconds since the epoch, or -1 if the pair is not cached.
+     */
+    public long getTimestamp(CurrencyPair pair) {
+        synchronized (entries) {
+            CachedRate entry = entries.get(pair);
+            return entry == null ? -1 : entry.storedAtMillis;
+        }
+    }
+
+    /**
+     * @return Returns the time to live of a cached rate in milliseconds.
+     */
+    public long getTtlMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+    }
+
+    /**
+     * @return Returns the number of lookups answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Returns the number of lookups that were not answered from the cache.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Stores the rate of the pair.
+     * @param pair The currency pair.
+     * @param rate The conversion rate.
+     */
+    public void put(CurrencyPair pair, double rate) {
+        synchronized (entries) {
+            entries.put(pair, new CachedRate(rate, System.nanoTime(), System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * @return Returns the number of cached pairs, including expired ones that have not been removed yet.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
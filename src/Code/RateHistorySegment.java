@@ -0,0 +1,512 @@
+package Code;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * This class is an immutable segment of the rate history, stored in a memory-mapped file.
+ * A segment holds a block of consecutive rate vectors in columns: one column of timestamps and one column of pivot
+ * rates per currency. The columns are compressed in the manner of Facebook's Gorilla time-series database:
+ * timestamps are stored as the delta of their deltas, so a fixed cadence costs one bit per row, and every rate is
+ * stored as the XOR with the previous rate of its column, so an unchanged rate costs one bit.
+ * The file starts with a fixed header, followed by the code table, the offsets of the columns and the columns:
+ * <pre>
+ *     int    magic        'CCRH'
+ *     int    version      1
+ *     int    rows         number of rate vectors
+ *     int    columns      number of currencies
+ *     long   first        timestamp of the first row, milliseconds since the epoch
+ *     long   last         timestamp of the last row
+ *     byte   codes[3 * columns]     ASCII currency codes, in the order of the rate columns
+ *     int    offsets[columns + 2]   file offset of the timestamp column, of every rate column and of the end
+ *     bit streams of the timestamp column and of the rate columns
+ * </pre>
+ * The code table lets a segment be read by a registry whose currencies differ from the ones it was written with.
+ * A column is decoded from its start, so a segment is kept to a bounded number of rows.
+ */
+final class RateHistorySegment {
+
+    /**
+     * Writes a stream of bits, most significant bit first.
+     */
+    private static final class BitWriter {
+        private byte[] bytes = new byte[4096];
+        private int length;
+        private int current;
+        private int used;
+
+        /**
+         * Writes the low bits of a value.
+         * @param value The value.
+         * @param count The number of bits, between 1 and 64.
+         */
+        private void writeBits(long value, int count) {
+            while (count > 0) {
+                int take = Math.min(8 - used, count);
+                int chunk = (int) (value >>> (count - take)) & ((1 << take) - 1);
+                current = (current << take) | chunk;
+                used += take;
+                count -= take;
+                if (used == 8) {
+                    if (length == bytes.length) {
+                        bytes = Arrays.copyOf(bytes, length * 2);
+                    }
+                    bytes[length++] = (byte) current;
+                    current = 0;
+                    used = 0;
+                }
+            }
+        }
+
+        /**
+         * Pads the last byte with zero bits.
+         */
+        private void finish() {
+            if (used > 0) {
+                writeBits(0, 8 - used);
+            }
+        }
+    }
+
+    /**
+     * Reads a stream of bits, most significant bit first, from a buffer.
+     * Bits are read eight bytes at a time, except at the very end of the buffer.
+     */
+    private static final class BitReader {
+        private final ByteBuffer buffer;
+        private long bitPosition;
+
+        /**
+         * Parameterized constructor.
+         * @param buffer The buffer.
+         * @param position The index of the first byte of the stream.
+         */
+        private BitReader(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.bitPosition = (long) position << 3;
+        }
+
+        /**
+         * Reads bits.
+         * @param count The number of bits, between 1 and 64.
+         * @return Returns the bits as the low bits of a value.
+         */
+        private long readBits(int count) {
+            int index = (int) (bitPosition >>> 3);
+            int shift = (int) (bitPosition & 7);
+            bitPosition += count;
+            if (index + 9 <= buffer.limit()) {
+                long bits = buffer.getLong(index) << shift;
+                if (shift + count > 64) {
+                    bits |= (buffer.get(index + 8) & 0xFFL) >>> (8 - shift);
+                }
+                return bits >>> (64 - count);
+            }
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                int bit = shift + i;
+                value = (value << 1) | ((buffer.get(index + (bit >>> 3)) >>> (7 - (bit & 7))) & 1);
+            }
+            return value;
+        }
+
+        /**
+         * @return Returns true if the next bit is set.
+         */
+        private boolean readBit() {
+            return readBits(1) != 0;
+        }
+    }
+
+    /**
+     * Decodes a timestamp column one row after the other.
+     */
+    private static final class TimestampDecoder {
+        private final BitReader reader;
+        private long previous;
+        private long delta;
+        private boolean started;
+
+        /**
+         * Parameterized constructor.
+         * @param reader The reader of the column.
+         */
+        private TimestampDecoder(BitReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return Returns the timestamp of the next row.
+         */
+        private long next() {
+            if (!started) {
+                started = true;
+                previous = reader.readBits(64);
+                return previous;
+            }
+            long deltaOfDelta;
+            if (!reader.readBit()) {
+                deltaOfDelta = 0;
+            }
+            else if (!reader.readBit()) {
+                deltaOfDelta = reader.readBits(12) - 2047;
+            }
+            else if (!reader.readBit()) {
+                deltaOfDelta = reader.readBits(20) - 524287;
+            }
+            else if (!reader.readBit()) {
+                deltaOfDelta = reader.readBits(32) - 2147483647L;
+            }
+            else {
+                deltaOfDelta = reader.readBits(64);
+            }
+            delta += deltaOfDelta;
+            previous += delta;
+            return previous;
+        }
+    }
+
+    /**
+     * Decodes a rate column one row after the other.
+     */
+    private static final class ValueDecoder {
+        private final BitReader reader;
+        private long previous;
+        private int leading;
+        private int trailing;
+        private boolean started;
+
+        /**
+         * Parameterized constructor.
+         * @param reader The reader of the column.
+         */
+        private ValueDecoder(BitReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * @return Returns the rate of the next row.
+         */
+        private double next() {
+            if (!started) {
+                started = true;
+                previous = reader.readBits(64);
+            }
+            else if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.readBits(5);
+                    int significant = (int) reader.readBits(6) + 1;
+                    trailing = 64 - leading - significant;
+                }
+                previous ^= reader.readBits(64 - leading - trailing) << trailing;
+            }
+            return Double.longBitsToDouble(previous);
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int MAGIC = 0x43435248;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final ByteBuffer buffer;
+    private final int rows;
+    private final long firstTimestamp;
+    private final long lastTimestamp;
+    private final int[] offsets;
+    private final int[] columnOfOrdinal;
+
+    /**
+     * Parameterized constructor.
+     * Maps a segment file into memory and matches its columns to the currencies of the registry.
+     * @param path The path of the segment file.
+     * @param registry The registry the ordinals refer to.
+     * @throws IOException Thrown if the segment file cannot be read or is corrupt.
+     */
+    RateHistorySegment(Path path, CurrencyRegistry registry) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Invalid rate history segment: " + path);
+        }
+        rows = buffer.getInt(8);
+        int columns = buffer.getInt(12);
+        firstTimestamp = buffer.getLong(16);
+        lastTimestamp = buffer.getLong(24);
+        int offsetsStart = HEADER_SIZE + 3 * columns;
+        if (rows <= 0 || columns < 0 || buffer.limit() < offsetsStart + 4 * (columns + 2)) {
+            throw new IOException("Invalid rate history segment: " + path);
+        }
+        offsets = new int[columns + 2];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = buffer.getInt(offsetsStart + 4 * i);
+            if (offsets[i] < offsetsStart || offsets[i] > buffer.limit() || (i > 0 && offsets[i] < offsets[i - 1])) {
+                throw new IOException("Invalid rate history segment: " + path);
+            }
+        }
+        columnOfOrdinal = new int[registry.size()];
+        Arrays.fill(columnOfOrdinal, -1);
+        byte[] code = new byte[3];
+        for (int column = 0; column < columns; column++) {
+            buffer.get(HEADER_SIZE + 3 * column, code);
+            int ordinal = registry.getOrdinal(new String(code, StandardCharsets.US_ASCII));
+            if (ordinal != -1) {
+                columnOfOrdinal[ordinal] = column;
+            }
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Creates a decoder of the timestamp column.
+     * @return Returns the decoder.
+     */
+    private TimestampDecoder timestamps() {
+        return new TimestampDecoder(new BitReader(buffer, offsets[0]));
+    }
+
+    /**
+     * Creates a decoder of a rate column.
+     * @param column The index of the column.
+     * @return Returns the decoder.
+     */
+    private ValueDecoder values(int column) {
+        return new ValueDecoder(new BitReader(buffer, offsets[column + 1]));
+    }
+
+    /**
+     * Writes the compressed timestamp column.
+     * @param writer The writer.
+     * @param timestamps The timestamps.
+     * @param rows The number of rows.
+     */
+    private static void writeTimestamps(BitWriter writer, long[] timestamps, int rows) {
+        writer.writeBits(timestamps[0], 64);
+        long delta = 0;
+        for (int i = 1; i < rows; i++) {
+            long newDelta = timestamps[i] - timestamps[i - 1];
+            long deltaOfDelta = newDelta - delta;
+            delta = newDelta;
+            if (deltaOfDelta == 0) {
+                writer.writeBits(0, 1);
+            }
+            else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                writer.writeBits(0b10, 2);
+                writer.writeBits(deltaOfDelta + 2047, 12);
+            }
+            else if (deltaOfDelta >= -524287 && deltaOfDelta <= 524288) {
+                writer.writeBits(0b110, 3);
+                writer.writeBits(deltaOfDelta + 524287, 20);
+            }
+            else if (deltaOfDelta >= -2147483647L && deltaOfDelta <= 2147483648L) {
+                writer.writeBits(0b1110, 4);
+                writer.writeBits(deltaOfDelta + 2147483647L, 32);
+            }
+            else {
+                writer.writeBits(0b1111, 4);
+                writer.writeBits(deltaOfDelta, 64);
+            }
+        }
+    }
+
+    /**
+     * Writes a compressed rate column.
+     * @param writer The writer.
+     * @param rates The rate vectors, indexed by row and column.
+     * @param column The index of the column.
+     * @param rows The number of rows.
+     */
+    private static void writeValues(BitWriter writer, double[][] rates, int column, int rows) {
+        long previous = Double.doubleToRawLongBits(rates[0][column]);
+        writer.writeBits(previous, 64);
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 1; i < rows; i++) {
+            long bits = Double.doubleToRawLongBits(rates[i][column]);
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                writer.writeBits(0, 1);
+                continue;
+            }
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading != -1 && leading >= previousLeading && trailing >= previousTrailing) {
+                writer.writeBits(0b10, 2);
+                writer.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            }
+            else {
+                int significant = 64 - leading - trailing;
+                writer.writeBits(0b11, 2);
+                writer.writeBits(leading, 5);
+                writer.writeBits(significant - 1, 6);
+                writer.writeBits(xor >>> trailing, significant);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Package Methods
+     ******************************************************************************************************************/
+    /**
+     * Compresses rate vectors into a new segment file.
+     * The file is written to a temporary file first and then moved in place, so readers never see a partial file.
+     * @param path The path of the segment file.
+     * @param codes The currency codes, in the order of the columns.
+     * @param timestamps The timestamps of the rows, in increasing order.
+     * @param rates The pivot rate vectors, indexed by row and column.
+     * @param rows The number of rows, at least one.
+     * @throws IOException Handles the Files methods.
+     */
+    static void write(Path path, String[] codes, long[] timestamps, double[][] rates, int rows) throws IOException {
+        int columns = codes.length;
+        BitWriter writer = new BitWriter();
+        int[] streamOffsets = new int[columns + 2];
+        writeTimestamps(writer, timestamps, rows);
+        writer.finish();
+        for (int column = 0; column < columns; column++) {
+            streamOffsets[column + 1] = writer.length;
+            writeValues(writer, rates, column, rows);
+            writer.finish();
+        }
+        streamOffsets[columns + 1] = writer.length;
+        int dataStart = HEADER_SIZE + 3 * columns + 4 * (columns + 2);
+        ByteBuffer header = ByteBuffer.allocate(dataStart);
+        header.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(columns)
+                .putLong(timestamps[0]).putLong(timestamps[rows - 1]);
+        for (String code : codes) {
+            header.put(code.getBytes(StandardCharsets.US_ASCII), 0, 3);
+        }
+        for (int offset : streamOffsets) {
+            header.putInt(dataStart + offset);
+        }
+        header.flip();
+        Path temporary = Files.createTempFile(path.getParent(), "segment", ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            ByteBuffer data = ByteBuffer.wrap(writer.bytes, 0, writer.length);
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the row in effect at a time, i.e. the last row whose timestamp is not after it.
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return Returns the index of the row, or -1 if the segment starts after the time.
+     */
+    int floorIndex(long timestamp) {
+        if (timestamp < firstTimestamp) {
+            return -1;
+        }
+        if (timestamp >= lastTimestamp) {
+            return rows - 1;
+        }
+        TimestampDecoder decoder = timestamps();
+        for (int i = 0; i < rows; i++) {
+            if (decoder.next() > timestamp) {
+                return i - 1;
+            }
+        }
+        return rows - 1;
+    }
+
+    /**
+     * Returns the pivot rate of a currency in a row.
+     * @param ordinal The ordinal of the currency.
+     * @param row The index of the row.
+     * @return Returns the pivot rate, or -1 if the segment has no rate for the currency.
+     */
+    double readRate(int ordinal, int row) {
+        int column = columnOfOrdinal[ordinal];
+        if (column == -1) {
+            return -1;
+        }
+        ValueDecoder decoder = values(column);
+        double rate = decoder.next();
+        for (int i = 0; i < row; i++) {
+            rate = decoder.next();
+        }
+        return rate;
+    }
+
+    /**
+     * Decodes the timestamp column.
+     * @return Returns the timestamps of all rows.
+     */
+    long[] readTimestamps() {
+        long[] timestamps = new long[rows];
+        TimestampDecoder decoder = timestamps();
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = decoder.next();
+        }
+        return timestamps;
+    }
+
+    /**
+     * Decodes the rate column of a currency.
+     * @param ordinal The ordinal of the currency.
+     * @param rates The array the pivot rates of all rows are written to. They are -1 if the segment has no rate for
+     *              the currency.
+     */
+    void readRates(int ordinal, double[] rates) {
+        int column = columnOfOrdinal[ordinal];
+        if (column == -1) {
+            Arrays.fill(rates, 0, rows, -1);
+            return;
+        }
+        ValueDecoder decoder = values(column);
+        for (int i = 0; i < rows; i++) {
+            rates[i] = decoder.next();
+        }
+    }
+
+    /**
+     * @return Returns the number of rows.
+     */
+    int size() {
+        return rows;
+    }
+
+    /**
+     * @return Returns the size of the segment file in bytes.
+     */
+    long byteSize() {
+        return buffer.limit();
+    }
+
+    /**
+     * @return Returns the timestamp of the first row.
+     */
+    long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    /**
+     * @return Returns the timestamp of the last row.
+     */
+    long getLastTimestamp() {
+        return lastTimestamp;
+    }
+}
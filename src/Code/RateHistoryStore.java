@@ -0,0 +1,550 @@
+package Code;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * This class is an embedded, append-only store of the history of the conversion rates.
+ * Every appended RateMatrix is stored as one row: its timestamp and the rate of every currency against the pivot
+ * currency, keyed by the ordinals of CurrencyRegistry. The cross rate of any pair at any time is computed from the
+ * two pivot rates of a row, the same way RateMatrix does.
+ * New rows are kept in memory and appended to the uncompressed 'active.log' file of the store directory, so no row is
+ * lost when the application exits. Once the rows span 'currency.history.segmentSpanMillis' (a week by default), or
+ * 'currency.history.segmentRows' rows have been collected (10080, a week of per-minute rates, by default), they are
+ * compressed into an immutable, memory-mapped RateHistorySegment file, so the active log stays small whether the rates
+ * are refreshed every minute or every hour.
+ * The store directory is named by the 'currency.history.dir' system property, 'src/Resources/Data/history' by default.
+ * Only one store at a time may write to a directory, e.g. when the application and the conversion server are started
+ * together: the writer holds a lock on the 'store.lock' file, and a store opened while the lock is held is read-only.
+ * It reads the rows stored when it was opened and ignores appended rates.
+ * Lookups never block appends for longer than it takes to read the rows in memory, and the store is safe to share
+ * between threads.
+ */
+public final class RateHistoryStore implements AutoCloseable {
+
+    /**
+     * The rates of a currency pair over a time range.
+     */
+    public static final class Series {
+        private long[] timestamps = new long[64];
+        private double[] rates = new double[64];
+        private int size;
+
+        /**
+         * Adds a rate to the series.
+         * @param timestamp The time of the rate.
+         * @param rate The rate.
+         */
+        private void add(long timestamp, double rate) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                rates = Arrays.copyOf(rates, size * 2);
+            }
+            timestamps[size] = timestamp;
+            rates[size++] = rate;
+        }
+
+        /**
+         * @return Returns the number of rates in the series.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param index The index of the rate, between 0 and size() - 1.
+         * @return Returns the time of the rate, in milliseconds since the epoch.
+         */
+        public long getTimestamp(int index) {
+            return timestamps[index];
+        }
+
+        /**
+         * @param index The index of the rate, between 0 and size() - 1.
+         * @return Returns the conversion rate, or -1 if the rate of either currency was unknown at that time.
+         */
+        public double getRate(int index) {
+            return rates[index];
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int ACTIVE_MAGIC = 0x43435241;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_ROWS = Integer.getInteger("currency.history.segmentRows", 10080);
+    private static final long SEGMENT_SPAN_MILLIS = Long.getLong("currency.history.segmentSpanMillis", 7L * 24 * 60 * 60 * 1000);
+    private static final String ACTIVE_FILE = "active.log";
+    private static final String LOCK_FILE = "store.lock";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    private static final Path DEFAULT_DIRECTORY = Paths.get(System.getProperty("currency.history.dir", "src/Resources/Data/history"));
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Path directory;
+    private final CurrencyRegistry registry;
+    private final String[] codes;
+    private final ByteBuffer record;
+    private volatile RateHistorySegment[] segments;
+    private FileChannel lockChannel;
+    private FileChannel activeChannel;
+    private long[] activeTimestamps = new long[64];
+    private double[][] activeRates = new double[64][];
+    private int activeSize;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    /**
+     * Parameterized constructor.
+     * @param directory The store directory.
+     * @param registry The registry the ordinals refer to.
+     * @param segments The segments, sorted by time.
+     */
+    private RateHistoryStore(Path directory, CurrencyRegistry registry, RateHistorySegment[] segments) {
+        this.directory = directory;
+        this.registry = registry;
+        this.segments = segments;
+        this.codes = new String[registry.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = registry.getCode(i);
+        }
+        this.record = ByteBuffer.allocate(8 + 8 * codes.length);
+        if (segments.length > 0) {
+            lastTimestamp = segments[segments.length - 1].getLastTimestamp();
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the cross rate computed from two pivot rates.
+     * @param fromRate The pivot rate of the base currency.
+     * @param toRate The pivot rate of the target currency.
+     * @return Returns the conversion rate, or -1 if either pivot rate is unknown.
+     */
+    private static double crossRate(double fromRate, double toRate) {
+        return (fromRate > 0 && toRate > 0) ? toRate / fromRate : -1;
+    }
+
+    /**
+     * Creates the header of an empty active log.
+     * @param codes The currency codes, in the order of the rates of every record.
+     * @return Returns the header.
+     */
+    private static ByteBuffer activeHeader(String[] codes) {
+        ByteBuffer header = ByteBuffer.allocate(12 + 3 * codes.length);
+        header.putInt(ACTIVE_MAGIC).putInt(VERSION).putInt(codes.length);
+        for (String code : codes) {
+            header.put(code.getBytes(StandardCharsets.US_ASCII), 0, 3);
+        }
+        return header.flip();
+    }
+
+    /**
+     * Adds a row to the rows in memory.
+     * @param timestamp The time of the rates.
+     * @param rates The pivot rates, indexed by ordinal.
+     */
+    private void addActiveRow(long timestamp, double[] rates) {
+        if (activeSize == activeTimestamps.length) {
+            activeTimestamps = Arrays.copyOf(activeTimestamps, activeSize * 2);
+            activeRates = Arrays.copyOf(activeRates, activeSize * 2);
+        }
+        activeTimestamps[activeSize] = timestamp;
+        activeRates[activeSize++] = rates;
+        lastTimestamp = timestamp;
+    }
+
+    /**
+     * Takes the lock that lets this store write to its directory.
+     * If another store holds the lock, in this or another process, the store stays read-only.
+     * @throws IOException Thrown if the lock file cannot be opened.
+     */
+    private void lock() throws IOException {
+        lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            lockChannel = null;
+        }
+    }
+
+    /**
+     * Reads the active log into memory and, unless the store is read-only, opens it for appending.
+     * Rows already stored in a segment are skipped. A log written for other currencies is compressed into a segment
+     * with its own codes, and a record cut short by a crash is dropped. Rows that are due to be sealed are compressed
+     * into a segment.
+     * @throws IOException Thrown if the active log cannot be read or written.
+     */
+    private void openActiveLog() throws IOException {
+        Path path = directory.resolve(ACTIVE_FILE);
+        boolean writable = lockChannel != null;
+        if (!writable && !Files.isRegularFile(path)) {
+            return;
+        }
+        FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ);
+        ByteBuffer log;
+        try {
+            log = ByteBuffer.allocate((int) channel.size());
+            while (log.hasRemaining() && channel.read(log, log.position()) > 0) {
+                // Keeps reading until the whole log is in the buffer.
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        log.flip();
+        boolean reuse = false;
+        if (log.remaining() >= 12 && log.getInt() == ACTIVE_MAGIC && log.getInt() == VERSION) {
+            int columns = log.getInt();
+            String[] logCodes = new String[Math.max(0, columns)];
+            byte[] code = new byte[3];
+            for (int i = 0; i < logCodes.length && log.remaining() >= 3; i++) {
+                log.get(code);
+                logCodes[i] = new String(code, StandardCharsets.US_ASCII);
+            }
+            int recordSize = 8 + 8 * logCodes.length;
+            long[] timestamps = new long[16];
+            List<double[]> rows = new ArrayList<>();
+            while (log.remaining() >= recordSize) {
+                long timestamp = log.getLong();
+                double[] rates = new double[logCodes.length];
+                for (int i = 0; i < rates.length; i++) {
+                    rates[i] = log.getDouble();
+                }
+                if (timestamp > lastTimestamp) {
+                    if (rows.size() == timestamps.length) {
+                        timestamps = Arrays.copyOf(timestamps, rows.size() * 2);
+                    }
+                    timestamps[rows.size()] = timestamp;
+                    rows.add(rates);
+                    lastTimestamp = timestamp;
+                }
+            }
+            reuse = Arrays.equals(logCodes, codes);
+            if (reuse) {
+                for (int i = 0; i < rows.size(); i++) {
+                    addActiveRow(timestamps[i], rows.get(i));
+                }
+            }
+            else if (!rows.isEmpty() && writable) {
+                seal(logCodes, timestamps, rows.toArray(new double[0][]), rows.size());
+            }
+        }
+        if (!writable) {
+            channel.close();
+            return;
+        }
+        activeChannel = channel;
+        if (reuse) {
+            activeChannel.truncate(log.position());
+        }
+        else {
+            activeChannel.truncate(0);
+            activeChannel.write(activeHeader(codes), 0);
+        }
+        if (isSealDue()) {
+            sealActiveRows();
+        }
+    }
+
+    /**
+     * @return Returns true if the rows in memory span the segment time span or reach the segment row count.
+     */
+    private boolean isSealDue() {
+        return activeSize >= SEGMENT_ROWS
+                || (activeSize > 0 && activeTimestamps[activeSize - 1] - activeTimestamps[0] >= SEGMENT_SPAN_MILLIS);
+    }
+
+    /**
+     * Compresses the rows in memory into a new segment and empties the active log.
+     * @throws IOException Handles seal() and the FileChannel methods.
+     */
+    private void sealActiveRows() throws IOException {
+        seal(codes, activeTimestamps, activeRates, activeSize);
+        activeSize = 0;
+        activeTimestamps = new long[64];
+        activeRates = new double[64][];
+        activeChannel.truncate(0);
+        activeChannel.write(activeHeader(codes), 0);
+    }
+
+    /**
+     * Appends a record to the active log.
+     * @param timestamp The time of the rates.
+     * @param rates The pivot rates, indexed by ordinal.
+     * @throws IOException Handles write().
+     */
+    private void writeRecord(long timestamp, double[] rates) throws IOException {
+        record.clear();
+        record.putLong(timestamp);
+        for (double rate : rates) {
+            record.putDouble(rate);
+        }
+        record.flip();
+        long position = activeChannel.size();
+        while (record.hasRemaining()) {
+            position += activeChannel.write(record, position);
+        }
+    }
+
+    /**
+     * Compresses rows into a new segment and adds it to the segments of the store.
+     * @param segmentCodes The currency codes, in the order of the rates of every row.
+     * @param timestamps The timestamps of the rows.
+     * @param rates The pivot rates, indexed by row and column.
+     * @param rows The number of rows.
+     * @throws IOException Handles RateHistorySegment.write() and the RateHistorySegment().
+     */
+    private void seal(String[] segmentCodes, long[] timestamps, double[][] rates, int rows) throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + timestamps[0] + SEGMENT_SUFFIX);
+        RateHistorySegment.write(path, segmentCodes, timestamps, rates, rows);
+        RateHistorySegment segment = new RateHistorySegment(path, registry);
+        RateHistorySegment[] newSegments = Arrays.copyOf(segments, segments.length + 1);
+        newSegments[segments.length] = segment;
+        segments = newSegments;
+    }
+
+    /**
+     * Returns the last segment that starts at or before a time.
+     * @param segments The segments, sorted by time.
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return Returns the index of the segment, or -1 if every segment starts after the time.
+     */
+    private static int floorSegment(RateHistorySegment[] segments, long timestamp) {
+        int low = 0;
+        int high = segments.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (segments[middle].getFirstTimestamp() <= timestamp) {
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Opens the store in a directory, creating it if it does not exist.
+     * The store is read-only if another store is open in the same directory.
+     * @param directory The store directory.
+     * @param registry The registry the ordinals refer to.
+     * @return Returns the store.
+     * @throws IOException Thrown if the directory, a segment or the active log cannot be read.
+     */
+    public static RateHistoryStore open(Path directory, CurrencyRegistry registry) throws IOException {
+        Files.createDirectories(directory);
+        List<RateHistorySegment> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                segments.add(new RateHistorySegment(file, registry));
+            }
+        }
+        segments.sort(Comparator.comparingLong(RateHistorySegment::getFirstTimestamp));
+        RateHistoryStore store = new RateHistoryStore(directory, registry, segments.toArray(new RateHistorySegment[0]));
+        store.lock();
+        try {
+            store.openActiveLog();
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Opens the store in the directory named by the 'currency.history.dir' system property.
+     * @param registry The registry the ordinals refer to.
+     * @return Returns the store.
+     * @throws IOException Handles open().
+     */
+    public static RateHistoryStore open(CurrencyRegistry registry) throws IOException {
+        return open(DEFAULT_DIRECTORY, registry);
+    }
+
+    /**
+     * Appends the rates of a rate matrix. Rates that are not newer than the last appended rates are ignored, and so
+     * are all rates if the store is read-only.
+     * @param matrix The rate matrix, built for the registry of the store.
+     * @return Returns true if the rates have been appended.
+     * @throws IOException Thrown if the rates cannot be written.
+     */
+    public synchronized boolean append(RateMatrix matrix) throws IOException {
+        if (matrix.size() != codes.length) {
+            throw new IllegalArgumentException("The rate matrix does not match the currency registry");
+        }
+        if (matrix.getTimestamp() <= lastTimestamp || activeChannel == null) {
+            return false;
+        }
+        double[] rates = new double[codes.length];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = matrix.getPivotRate(i);
+        }
+        writeRecord(matrix.getTimestamp(), rates);
+        addActiveRow(matrix.getTimestamp(), rates);
+        if (isSealDue()) {
+            sealActiveRows();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the conversion rate that was in effect at a time, i.e. the rate of the last row not after it.
+     * @param fromOrdinal The ordinal of the base currency.
+     * @param toOrdinal The ordinal of the target currency.
+     * @param timestamp The time in milliseconds since the epoch.
+     * @return Returns the conversion rate, or -1 if the store has no rate of both currencies at that time.
+     */
+    public double getRate(int fromOrdinal, int toOrdinal, long timestamp) {
+        synchronized (this) {
+            if (activeSize > 0 && timestamp >= activeTimestamps[0]) {
+                int index = Arrays.binarySearch(activeTimestamps, 0, activeSize, timestamp);
+                if (index < 0) {
+                    index = -index - 2;
+                }
+                return crossRate(activeRates[index][fromOrdinal], activeRates[index][toOrdinal]);
+            }
+        }
+        RateHistorySegment[] current = segments;
+        int segmentIndex = floorSegment(current, timestamp);
+        if (segmentIndex == -1) {
+            return -1;
+        }
+        RateHistorySegment segment = current[segmentIndex];
+        int row = segment.floorIndex(timestamp);
+        return crossRate(segment.readRate(fromOrdinal, row), segment.readRate(toOrdinal, row));
+    }
+
+    /**
+     * Returns the conversion rates of a currency pair over a time range.
+     * @param fromOrdinal The ordinal of the base currency.
+     * @param toOrdinal The ordinal of the target currency.
+     * @param start The start of the range, inclusive, in milliseconds since the epoch.
+     * @param end The end of the range, inclusive, in milliseconds since the epoch.
+     * @return Returns the rates of every row in the range, in increasing order of time.
+     */
+    public Series getRates(int fromOrdinal, int toOrdinal, long start, long end) {
+        Series active = new Series();
+        synchronized (this) {
+            for (int row = 0; row < activeSize && activeTimestamps[row] <= end; row++) {
+                if (activeTimestamps[row] >= start) {
+                    active.add(activeTimestamps[row], crossRate(activeRates[row][fromOrdinal], activeRates[row][toOrdinal]));
+                }
+            }
+        }
+        Series series = new Series();
+        RateHistorySegment[] current = segments;
+        long segmentsEnd = Long.MIN_VALUE;
+        double[] fromRates = new double[0];
+        double[] toRates = new double[0];
+        for (int i = Math.max(0, floorSegment(current, start)); i < current.length; i++) {
+            RateHistorySegment segment = current[i];
+            if (segment.getFirstTimestamp() > end) {
+                break;
+            }
+            segmentsEnd = segment.getLastTimestamp();
+            if (segment.getLastTimestamp() < start) {
+                continue;
+            }
+            if (fromRates.length < segment.size()) {
+                fromRates = new double[segment.size()];
+                toRates = new double[segment.size()];
+            }
+            long[] timestamps = segment.readTimestamps();
+            segment.readRates(fromOrdinal, fromRates);
+            segment.readRates(toOrdinal, toRates);
+            for (int row = 0; row < timestamps.length; row++) {
+                if (timestamps[row] >= start && timestamps[row] <= end) {
+                    series.add(timestamps[row], crossRate(fromRates[row], toRates[row]));
+                }
+            }
+        }
+        for (int i = 0; i < active.size(); i++) {
+            if (active.getTimestamp(i) > segmentsEnd) {
+                series.add(active.getTimestamp(i), active.getRate(i));
+            }
+        }
+        return series;
+    }
+
+    /**
+     * @return Returns the number of rows in the store.
+     */
+    public synchronized long size() {
+        long size = activeSize;
+        for (RateHistorySegment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return Returns the size of the compressed segments in bytes.
+     */
+    public long getSegmentBytes() {
+        long bytes = 0;
+        for (RateHistorySegment segment : segments) {
+            bytes += segment.byteSize();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Returns true if another store was writing to the directory when this store was opened, so this store
+     * ignores appended rates.
+     */
+    public synchronized boolean isReadOnly() {
+        return lockChannel == null;
+    }
+
+    /**
+     * @return Returns the registry the ordinals refer to.
+     */
+    public CurrencyRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Closes the active log and releases the lock on the directory. Rates appended afterwards are ignored.
+     * @throws IOException Handles close().
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.close();
+            activeChannel = null;
+        }
+        if (lockChannel != null) {
+            lockChannel.close();
+            lockChannel = null;
+        }
+    }
+}
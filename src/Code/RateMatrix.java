@@ -0,0 +1,102 @@
+package Code;
+
+/**
+ * This class holds the conversion rates between every pair of supported currencies.
+ * It is built from a single vector of rates against a pivot currency, e.g. USD.
+ * The cross rate from currency A to currency B is computed locally as rate[B] / rate[A].
+ * All N x N cross rates are stored in one primitive array indexed by the dense ordinals of CurrencyRegistry.
+ * A RateMatrix is immutable once it is created.
+ */
+public final class RateMatrix {
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final int size;
+    private final int pivotOrdinal;
+    private final double[] pivotRates;
+    private final double[] crossRates;
+    private final long timestamp;
+
+    /**
+     * Parameterized constructor.
+     * Computes the cross rates of all currency pairs from the pivot rates.
+     * @param pivotOrdinal The ordinal of the pivot currency.
+     * @param pivotRates The units of every currency that one unit of the pivot currency buys, indexed by ordinal.
+     *                   A rate of -1 marks a currency whose rate is unknown.
+     * @param timestamp The time the rates were obtained at, in milliseconds since the epoch.
+     */
+    public RateMatrix(int pivotOrdinal, double[] pivotRates, long timestamp) {
+        this.size = pivotRates.length;
+        this.pivotOrdinal = pivotOrdinal;
+        this.pivotRates = pivotRates.clone();
+        this.timestamp = timestamp;
+        this.crossRates = new double[size * size];
+        for (int from = 0; from < size; from++) {
+            double fromRate = this.pivotRates[from];
+            int row = from * size;
+            for (int to = 0; to < size; to++) {
+                double toRate = this.pivotRates[to];
+                if (fromRate > 0 && toRate > 0) {
+                    crossRates[row + to] = toRate / fromRate;
+                }
+                else {
+                    crossRates[row + to] = -1;
+                }
+            }
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the conversion rate from the base currency to the target currency.
+     * @param fromOrdinal The ordinal of the base currency.
+     * @param toOrdinal The ordinal of the target currency.
+     * @return Returns the conversion rate or -1 if the rate of either currency is unknown.
+     */
+    public double getRate(int fromOrdinal, int toOrdinal) {
+        return crossRates[fromOrdinal * size + toOrdinal];
+    }
+
+    /**
+     * Copies the conversion rates from the base currency to every currency, a whole row of the matrix, at once.
+     * @param fromOrdinal The ordinal of the base currency.
+     * @param out The array the rates are written to, indexed by the ordinal of the target currency, at least size()
+     *            long. Unknown rates are -1.
+     */
+    public void getRates(int fromOrdinal, double[] out) {
+        System.arraycopy(crossRates, fromOrdinal * size, out, 0, size);
+    }
+
+    /**
+     * @return Returns the ordinal of the pivot currency.
+     */
+    public int getPivotOrdinal() {
+        return pivotOrdinal;
+    }
+
+    /**
+     * Returns the rate of the given currency against the pivot currency.
+     * @param ordinal The ordinal of the currency.
+     * @return Returns the pivot rate or -1 if it is unknown.
+     */
+    public double getPivotRate(int ordinal) {
+        return pivotRates[ordinal];
+    }
+
+    /**
+     * @return Returns the time the rates were obtained at, in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return Returns the number of currencies covered by the matrix.
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,47 @@
+package Code;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A source of currency metadata and conversion rates, such as the currency API server.
+ * Currencies fetches every rate through the installed provider, see Currencies.setRateProvider(), and
+ * CurrencyJSONRetriever fetches the currency metadata through it.
+ * Implementations must be safe to call from many threads, and should give up promptly when the calling thread is
+ * interrupted, so that HedgedRateProvider can cancel the slower of two requests.
+ */
+public interface RateProvider {
+
+    /**
+     * @return Returns a short name of the provider, used in error messages and health reports.
+     */
+    String getName();
+
+    /**
+     * Fetches the conversion rates of any number of currency pairs.
+     * @param pairs The currency pairs.
+     * @param rates The map the fetched rates are stored in. Pairs without a rate are left out.
+     * @return Returns false if the rates could not be fetched, in which case some of them may have been stored.
+     * @throws IOException Thrown if the response cannot be read or the calling thread is interrupted.
+     */
+    boolean fetchRates(List<CurrencyPair> pairs, Map<CurrencyPair, Double> rates) throws IOException;
+
+    /**
+     * Returns the number of currency pairs the provider fetches with a single request to its server. Larger lists of
+     * pairs passed to fetchRates() are fetched with several requests, and HedgedRateProvider hedges every one of them
+     * on its own.
+     * @return Returns the largest number of pairs per request, or Integer.MAX_VALUE if there is no limit.
+     */
+    default int getMaxPairsPerRequest() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Fetches the metadata of every currency the provider knows about.
+     * @return Returns the fields of every currency, such as 'currencyName', by currency code, or null if the metadata
+     * could not be fetched.
+     * @throws IOException Thrown if the response cannot be read or the calling thread is interrupted.
+     */
+    Map<String, Map<String, String>> fetchCurrencies() throws IOException;
+}
@@ -0,0 +1,143 @@
+package Code;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class refreshes the conversion rates in the background.
+ * The rates of all currencies are fetched on a fixed cadence, 60 minutes by default ('currency.rates.refreshMinutes'),
+ * but never longer than the time to live of the rate cache ('currency.rates.ttlMinutes'), during which Currencies
+ * trusts the installed rate matrix. Every refresh starts between 10% and 20% of the cadence before the rates expire,
+ * so the fetch completes while the installed rates are still trusted and lookups never fall back to per-pair requests
+ * to the server; the random part spreads the requests of many clients.
+ * A failed refresh is retried with exponential backoff, starting at 30 seconds and capped at the cadence.
+ * Every refresh builds a new immutable RateMatrix and publishes it with a single volatile write through
+ * Currencies.setRateMatrix(), so readers never lock and never see a partially updated table.
+ * The new rates are also written to the rate snapshot file for the next start of the application.
+ */
+public class RateRefresher {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final long PERIOD_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("currency.rates.refreshMinutes", 60));
+    private static final long INITIAL_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final double JITTER = 0.1;
+    private static final String PIVOT_CODE = "USD";
+
+    /*******************************************************************************************************************
+     * Instance Variables.
+     ******************************************************************************************************************/
+    private final Currencies currencies;
+    private final ScheduledExecutorService executor;
+    private final long periodMillis;
+    private int failures;
+
+    /**
+     * Parameterized constructor.
+     * @param currencies The currencies used to fetch the rates.
+     */
+    public RateRefresher(Currencies currencies) {
+        this.currencies = currencies;
+        this.periodMillis = Math.min(PERIOD_MILLIS, Currencies.getRateCache().getTtlMillis());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Returns the delay before the next refresh after rates have been obtained.
+     * @return Returns the cadence shortened by a margin of 10% to 20% of it, in milliseconds.
+     */
+    private long nextDelay() {
+        double margin = JITTER + ThreadLocalRandom.current().nextDouble(0, JITTER);
+        return (long) (periodMillis * (1 - margin));
+    }
+
+    /**
+     * Returns the delay before the next attempt after a failed refresh.
+     * @return Returns the exponentially growing backoff, capped at the cadence, in milliseconds.
+     */
+    private long nextBackoff() {
+        long backoff = INITIAL_BACKOFF_MILLIS << Math.min(failures - 1, 20);
+        return Math.min(backoff, periodMillis);
+    }
+
+    /**
+     * Fetches the rates, publishes them and schedules the next refresh.
+     */
+    private void refresh() {
+        RateMatrix matrix = null;
+        try {
+            matrix = currencies.fetchRateMatrix(PIVOT_CODE);
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+        if (matrix == null) {
+            failures++;
+            schedule(nextBackoff());
+            return;
+        }
+        failures = 0;
+        Currencies.setRateMatrix(matrix);
+        try {
+            RateSnapshotFile.write(matrix, currencies.getRegistry());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        RateHistoryStore history = Currencies.getRateHistory();
+        if (history != null) {
+            try {
+                history.append(matrix);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        schedule(nextDelay());
+    }
+
+    /**
+     * Schedules the next refresh.
+     * @param delayMillis The delay in milliseconds.
+     */
+    private void schedule(long delayMillis) {
+        try {
+            executor.schedule(this::refresh, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The refresher has been stopped.
+        }
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Starts refreshing the rates.
+     * If the installed rates are still fresh, the first refresh happens the same margin before they expire as every
+     * later refresh, otherwise immediately.
+     */
+    public void start() {
+        RateMatrix matrix = Currencies.getRateMatrix();
+        long delay = 0;
+        if (matrix != null) {
+            delay = Math.max(0, matrix.getTimestamp() + nextDelay() - System.currentTimeMillis());
+        }
+        schedule(delay);
+    }
+
+    /**
+     * Stops refreshing the rates. A refresh in progress is interrupted.
+     */
+    public void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,167 @@
+package Code;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * This class reads and writes snapshots of the conversion rates in a compact binary format.
+ * A snapshot lets the application start without contacting the API server and keep converting while offline.
+ * The file starts with a fixed header, followed by the dense rate vector and the currency code table:
+ * <pre>
+ *     int    magic        'CCRS'
+ *     int    version      1
+ *     long   timestamp    milliseconds since the epoch
+ *     int    count        number of currencies
+ *     int    pivot        index of the pivot currency
+ *     double rates[count] units of every currency per unit of the pivot currency, -1 if unknown
+ *     byte   codes[3 * count] ASCII currency codes, in the order of the rates
+ * </pre>
+ * The code table lets a snapshot be read by a registry whose currencies differ from the ones it was written with.
+ * The snapshot is read from the file named by the 'currency.rates.snapshot' system property,
+ * 'src/Resources/Data/rates.bin' by default, or else from the 'Resources/Data/rates.bin' resource.
+ */
+public final class RateSnapshotFile {
+
+    /*******************************************************************************************************************
+     * Class Variables.
+     ******************************************************************************************************************/
+    private static final int MAGIC = 0x43435253;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final String RESOURCE = "Resources/Data/rates.bin";
+    private static final Path DEFAULT_PATH = Paths.get(System.getProperty("currency.rates.snapshot", "src/" + RESOURCE));
+
+    /**
+     * This class only has static methods.
+     */
+    private RateSnapshotFile() {
+    }
+
+    /*******************************************************************************************************************
+     * Private Methods
+     ******************************************************************************************************************/
+    /**
+     * Reads the snapshot file, falling back to reading the snapshot resource.
+     * The file is read whole rather than mapped, since its rates are copied into the rate matrix anyway and a live
+     * mapping would keep write() from replacing the file on Windows.
+     * @return Returns a buffer holding the snapshot, or null if there is no snapshot.
+     * @throws IOException Handles readAllBytes().
+     */
+    private static ByteBuffer open() throws IOException {
+        Path path = DEFAULT_PATH;
+        if (!Files.isRegularFile(path)) {
+            URL url = ClassLoader.getSystemClassLoader().getResource(RESOURCE);
+            if (url == null) {
+                return null;
+            }
+            if (!"file".equals(url.getProtocol())) {
+                try (InputStream inputStream = url.openStream()) {
+                    return ByteBuffer.wrap(inputStream.readAllBytes());
+                }
+            }
+            try {
+                path = Paths.get(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException(e);
+            }
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(path));
+    }
+
+    /*******************************************************************************************************************
+     * Public Methods
+     ******************************************************************************************************************/
+    /**
+     * Reads the rate snapshot and builds a rate matrix over the currencies of the registry.
+     * Currencies of the registry missing from the snapshot get a rate of -1.
+     * @param registry The registry whose ordinals the matrix uses.
+     * @return Returns the rate matrix, or null if there is no snapshot or its pivot currency is not supported.
+     * @throws IOException Thrown if the snapshot is corrupt.
+     */
+    public static RateMatrix load(CurrencyRegistry registry) throws IOException {
+        ByteBuffer buffer = open();
+        if (buffer == null) {
+            return null;
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Invalid rate snapshot");
+        }
+        long timestamp = buffer.getLong(8);
+        int count = buffer.getInt(16);
+        int pivot = buffer.getInt(20);
+        int codesOffset = HEADER_SIZE + count * Double.BYTES;
+        if (count <= 0 || pivot < 0 || pivot >= count || buffer.limit() < codesOffset + 3 * count) {
+            throw new IOException("Invalid rate snapshot");
+        }
+        double[] pivotRates = new double[registry.size()];
+        Arrays.fill(pivotRates, -1);
+        int pivotOrdinal = -1;
+        byte[] code = new byte[3];
+        for (int i = 0; i < count; i++) {
+            buffer.position(codesOffset + 3 * i);
+            buffer.get(code);
+            int ordinal = registry.getOrdinal(new String(code, StandardCharsets.US_ASCII));
+            if (ordinal != -1) {
+                pivotRates[ordinal] = buffer.getDouble(HEADER_SIZE + i * Double.BYTES);
+                if (i == pivot) {
+                    pivotOrdinal = ordinal;
+                }
+            }
+        }
+        if (pivotOrdinal == -1) {
+            return null;
+        }
+        return new RateMatrix(pivotOrdinal, pivotRates, timestamp);
+    }
+
+    /**
+     * Writes a rate snapshot to the default snapshot file.
+     * The snapshot is written to a temporary file first and then moved in place, so readers never see a partial file.
+     * @param codes The currency codes, in the order of the rates.
+     * @param pivot The index of the pivot currency.
+     * @param pivotRates The units of every currency per unit of the pivot currency, -1 if unknown.
+     * @param timestamp The time the rates were obtained at, in milliseconds since the epoch.
+     * @throws IOException Handles the Files methods.
+     */
+    public static void write(String[] codes, int pivot, double[] pivotRates, long timestamp) throws IOException {
+        int count = codes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * Double.BYTES + 3 * count);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(timestamp).putInt(count).putInt(pivot);
+        for (double rate : pivotRates) {
+            buffer.putDouble(rate);
+        }
+        for (String code : codes) {
+            buffer.put(code.getBytes(StandardCharsets.US_ASCII), 0, 3);
+        }
+        Path path = DEFAULT_PATH.toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Path temporary = Files.createTempFile(path.getParent(), "rates", ".tmp");
+        Files.write(temporary, buffer.array());
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the rates of a rate matrix to the default snapshot file.
+     * @param matrix The rate matrix.
+     * @param registry The registry whose ordinals the matrix uses.
+     * @throws IOException Handles write().
+     */
+    public static void write(RateMatrix matrix, CurrencyRegistry registry) throws IOException {
+        String[] codes = new String[matrix.size()];
+        double[] pivotRates = new double[matrix.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = registry.getCode(i);
+            pivotRates[i] = matrix.getPivotRate(i);
+        }
+        write(codes, matrix.getPivotOrdinal(), pivotRates, matrix.getTimestamp());
+    }
+}
@@ -1,6 +1,8 @@
 package Code;
 
 import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.event.Event;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -13,14 +15,50 @@ import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.math.BigInteger;
-import java.util.Currency;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.BitSet;
 
 /**
  * Contains the UI components of the application and the methods to control their behaviour.
  */
 public class UserInterface {
 
+    /**
+     * The type-ahead state of a combo box: the filtered view of the currency names backing it and the keys typed.
+     * Keys typed more than 'currency.input.typeAheadMillis' (1000 ms by default) apart start a new search.
+     */
+    private static final class TypeAhead {
+        private final FilteredList<String> items;
+        private final StringBuilder keys = new StringBuilder();
+        private long lastKeyMillis;
+
+        /**
+         * Parameterized constructor.
+         * @param names The currency names.
+         */
+        private TypeAhead(ObservableList<String> names) {
+            items = new FilteredList<>(names);
+        }
+
+        /**
+         * Forgets the typed keys and shows all currencies again.
+         */
+        private void clear() {
+            keys.setLength(0);
+            items.setPredicate(null);
+        }
+    }
+
+    /************************************************************************************************************
+     * Class Variables
+     ************************************************************************************************************/
+    private static final DateTimeFormatter RATES_TIME_FORMAT =
+            DateTimeFormatter.ofPattern("dd MMM yyyy, HH:mm").withZone(ZoneId.systemDefault());
+    private static final long TYPE_AHEAD_MILLIS = Long.getLong("currency.input.typeAheadMillis", 1000);
+    private static final AmountParser AMOUNT_PARSER = new AmountParser();
+
     /************************************************************************************************************
      * Instance Variables
      ************************************************************************************************************/
@@ -28,32 +66,38 @@ public class UserInterface {
     private Alert messageDialog;
     private Label fromLabel;
     private Label toLabel;
+    private Label ratesLabel;
     private ComboBox fromSelect;
     private ComboBox toSelect;
     private TextField fromTextField;
     private TextField toTextField;
-    private String currFromSelect;
-    private String currToSelect;
-    private double conversionRate;
+    private Button fanOutButton;
+    private Currencies currencies;
+    private CurrencySearchIndex searchIndex;
+    private TypeAhead fromTypeAhead;
+    private TypeAhead toTypeAhead;
+    private ConversionService conversionService;
+    private FanOutWindow fanOutWindow;
     private boolean currencyChange;
 
     /**
      * Default constructor
      * All display controls are initialized by creating their objects.
      * All fields with primitive types are initialized to their default values.
-     * @throws IOException Handles the configureControls().
+     * The combo boxes stay disabled until the currency metadata is installed with setCatalog().
+     * @throws IOException Handles configureControls().
      */
     public UserInterface() throws IOException {
         mainWindow = new GridPane();
         messageDialog = new Alert(Alert.AlertType.ERROR,"", ButtonType.OK);
         fromLabel = new Label();
         toLabel = new Label();
+        ratesLabel = new Label();
         fromSelect = new ComboBox();
         toSelect = new ComboBox();
         fromTextField = new TextField();
         toTextField = new TextField();
-        currFromSelect = "select";
-        currToSelect = "select";
+        fanOutButton = new Button();
         currencyChange = true;
         setMainWindowProperties();
         configureControls();
@@ -74,63 +118,66 @@ public class UserInterface {
         mainWindow.add(toLabel, 0, 2);
         mainWindow.add(toSelect, 1, 2);
         mainWindow.add(toTextField, 2, 2);
+        mainWindow.add(ratesLabel, 0, 3, 2, 1);
+        mainWindow.add(fanOutButton, 2, 3);
     }
 
     /**
-     * Computes the user provided amount to the target currency.
-     * It multiplies the user given amount by the conversion rate.
-     * The conversion rate is obtained from the 'getRate()' of the Currencies.java class.
-     * @return The converted amount of the target currency.
-     * @throws IOException Handles Currencies class methods and showMessageDialog();
+     * Initializes the Combo Boxes to their default state.
+     * The combo box is backed by the filtered view of its type-ahead state, which is set once and never rebuilt.
+     * @param comboBox Combo Box to be configured.
+     * @param typeAhead The type-ahead state of the combo box.
+     * @throws IOException
      */
-    private BigDecimal computeConversion() throws IOException{
-        Currencies currency = new Currencies();
-        String selectedFrom = fromSelect.getValue().toString();
-        selectedFrom = currency.getNameToId(selectedFrom);
-        String selectedTo = toSelect.getValue().toString();
-        selectedTo = currency.getNameToId(selectedTo);
-        Currency fromCurrency = Currency.getInstance(selectedFrom);
-        Currency toCurrency = Currency.getInstance(selectedTo);
-        if (!currFromSelect.equals(selectedFrom) || !currToSelect.equals(selectedTo)) {
-            currFromSelect = selectedFrom;
-            currToSelect = selectedTo;
-            conversionRate = currency.getRate(fromCurrency, toCurrency);
-            if (conversionRate == -1) {
-                showMessageDialog();
-                return BigDecimal.valueOf(0);
-            }
+    private void configureComboBoxes(ComboBox comboBox, TypeAhead typeAhead) throws IOException {
+        if (comboBox.getItems() != typeAhead.items) {
+            comboBox.setItems(typeAhead.items);
+            comboBox.setOnHidden(event -> typeAhead.clear());
         }
-        BigInteger amount = new BigInteger(fromTextField.getText());
-        BigDecimal finalAmount = currency.convert(amount, conversionRate);
-        return finalAmount;
+        typeAhead.clear();
+        comboBox.setValue("Select");
     }
 
     /**
-     * Initializes the Combo Boxes to their default state.
-     * @param comboBox Combo Box to be configured.
-     * @throws IOException Handles Currencies class constructor.
+     * Renders the results of the conversion service in the target currency text field.
+     * Results that have been superseded by newer input are not rendered.
+     * If the conversion rate cannot be obtained, the user is prompted with the message dialog.
      */
-    private void configureComboBoxes(ComboBox comboBox) throws IOException {
-        int noOfItems = comboBox.getItems().size();
-        if(noOfItems == 0) {
-            Currencies currency = new Currencies();
-            comboBox.getItems().addAll(currency.getCurrencyNames());
-        }
-        comboBox.setValue("Select");
+    private void configureConversionService() {
+        conversionService.setOnSucceeded(event -> {
+            if (!conversionService.hasPendingInput()) {
+                BigDecimal finalAmount = conversionService.getValue();
+                toTextField.setText(finalAmount == null ? "" : finalAmount.toPlainString());
+                updateRatesLabel();
+            }
+        });
+        conversionService.setOnFailed(event -> {
+            try {
+                showMessageDialog();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
     }
 
     /**
      * Initializes the controls of the application to their default state.
-     * @throws IOException Handles configureComboBoxes().
+     * The combo boxes are disabled until the currency metadata has been loaded.
+     * @throws IOException
      */
     private void configureControls() throws IOException {
         fromLabel.setText("FROM");
         toLabel.setText("TO");
-        configureComboBoxes(fromSelect);
-        configureComboBoxes(toSelect);
+        ratesLabel.getStyleClass().add("rates-label");
+        fromSelect.setValue("Select");
+        fromSelect.setDisable(true);
+        toSelect.setValue("Select");
+        toSelect.setDisable(true);
         fromTextField.setVisible(false);
         toTextField.setEditable(false);
         toTextField.setVisible(false);
+        fanOutButton.setText("All currencies");
+        fanOutButton.setDisable(true);
     }
 
     /**
@@ -148,17 +195,98 @@ public class UserInterface {
         messageDialog.getButtonTypes().set(0, new ButtonType("OK", ButtonBar.ButtonData.LEFT));
     }
 
+    /**
+     * Adds a typed key to the type-ahead search of a combo box and selects the first matching currency.
+     * Letters, digits and spaces extend the search, backspace shortens it and escape clears it. A key that no currency
+     * matches is ignored. The list of the combo box is filtered down to the matching currencies.
+     * @param comboBox The combo box.
+     * @param typeAhead The type-ahead state of the combo box.
+     * @param event The key press.
+     */
+    private void handleKeySelectPress(ComboBox comboBox, TypeAhead typeAhead, KeyEvent event) {
+        KeyCode keyCode = event.getCode();
+        StringBuilder keys = typeAhead.keys;
+        long now = System.currentTimeMillis();
+        if (now - typeAhead.lastKeyMillis > TYPE_AHEAD_MILLIS) {
+            keys.setLength(0);
+        }
+        typeAhead.lastKeyMillis = now;
+        if (keyCode == KeyCode.ESCAPE) {
+            typeAhead.clear();
+            return;
+        }
+        if (keyCode == KeyCode.BACK_SPACE) {
+            if (keys.length() == 0) {
+                return;
+            }
+            keys.setLength(keys.length() - 1);
+        }
+        else if (keyCode.isLetterKey() || keyCode.isDigitKey() || (keyCode == KeyCode.SPACE && keys.length() > 0)) {
+            keys.append(event.getText().isEmpty() ? keyCode.getName().substring(0, 1) : event.getText());
+        }
+        else {
+            return;
+        }
+        if (keys.length() == 0) {
+            typeAhead.items.setPredicate(null);
+            return;
+        }
+        BitSet matches = searchIndex.matches(keys);
+        if (matches.isEmpty()) {
+            keys.setLength(keys.length() - 1);
+            return;
+        }
+        typeAhead.items.setPredicate(name -> matches.get(searchIndex.indexOf(name)));
+        comboBox.getSelectionModel().select(0);
+        if (comboBox.getSkin() instanceof ComboBoxListViewSkin) {
+            ListView<?> list = (ListView<?>) ((ComboBoxListViewSkin<?>) comboBox.getSkin()).getPopupContent();
+            list.scrollTo(0);
+        }
+    }
+
     /**
      * Resets the application controls to their defaults.
      * @throws IOException Handles configureComboBoxes().
      */
     private void resetDisplay() throws IOException {
-        configureComboBoxes(fromSelect);
+        configureComboBoxes(fromSelect, fromTypeAhead);
         fromTextField.setText("");
         fromTextField.setVisible(false);
-        configureComboBoxes(toSelect);
+        configureComboBoxes(toSelect, toTypeAhead);
         toTextField.setText("");
         toTextField.setVisible(false);
+        ratesLabel.setText("");
+    }
+
+    /**
+     * Shows when the rate of the last conversion was obtained.
+     * Rates older than the time to live of the rate cache come from the offline rate snapshot and are marked as such.
+     */
+    private void updateRatesLabel() {
+        long ratesAsOf = Currencies.getRatesAsOf();
+        if (ratesAsOf == -1) {
+            ratesLabel.setText("");
+            return;
+        }
+        String time = RATES_TIME_FORMAT.format(Instant.ofEpochMilli(ratesAsOf));
+        if (System.currentTimeMillis() - ratesAsOf > Currencies.getRateCache().getTtlMillis()) {
+            ratesLabel.setText("Offline: rates as of " + time);
+        }
+        else {
+            ratesLabel.setText("Rates as of " + time);
+        }
+    }
+
+    /**
+     * Recomputes the 'All currencies' window for the selected base currency and the entered amount, if it is shown.
+     */
+    private void updateFanOut() {
+        if (fanOutWindow == null || !fanOutWindow.isShowing()) {
+            return;
+        }
+        Object selectedFrom = fromSelect.getValue();
+        String fromCode = (selectedFrom == null || selectedFrom.equals("Select")) ? null : currencies.getNameToId((String) selectedFrom);
+        fanOutWindow.update(fromCode, fromTextField.getText());
     }
 
     /**
@@ -175,6 +303,60 @@ public class UserInterface {
      * Public Methods
      *******************************************************************************************************************/
 
+    /**
+     * Installs the currency metadata loaded in the background and enables the combo boxes.
+     * Both combo boxes are backed by filtered views of the same list of currency names.
+     * Must be called on the JavaFX application thread.
+     * @param catalog The currency metadata.
+     * @throws IOException Handles configureComboBoxes().
+     */
+    public void setCatalog(CurrencyCatalog catalog) throws IOException {
+        currencies = catalog.getCurrencies();
+        searchIndex = catalog.getSearchIndex();
+        fromTypeAhead = new TypeAhead(catalog.getCurrencyNames());
+        toTypeAhead = new TypeAhead(catalog.getCurrencyNames());
+        conversionService = new ConversionService(currencies, AMOUNT_PARSER);
+        configureConversionService();
+        configureComboBoxes(fromSelect, fromTypeAhead);
+        configureComboBoxes(toSelect, toTypeAhead);
+        fanOutWindow = new FanOutWindow(currencies, AMOUNT_PARSER);
+        fromSelect.setDisable(false);
+        toSelect.setDisable(false);
+        fanOutButton.setDisable(false);
+        ratesLabel.setText("");
+    }
+
+    /**
+     * Reports that the currency metadata could not be loaded, below the text fields and in an Alert window, and asks
+     * the user whether to try again. The combo boxes stay disabled. Must be called on the JavaFX application thread.
+     * @param error The error that occurred while loading the currency metadata, or null if it is unknown.
+     * @return Returns true if the user chose to try again.
+     */
+    public boolean showLoadFailure(Throwable error) {
+        String reason = error == null || error.getMessage() == null ? "Unknown error." : error.getMessage();
+        ratesLabel.setText("Could not load the currencies.");
+        ButtonType retry = new ButtonType("Retry", ButtonBar.ButtonData.OK_DONE);
+        ButtonType close = new ButtonType("Close", ButtonBar.ButtonData.CANCEL_CLOSE);
+        Alert dialog = new Alert(Alert.AlertType.ERROR, reason, retry, close);
+        Stage stage = (Stage)dialog.getDialogPane().getScene().getWindow();
+        stage.getIcons().add(new Image(UserInterface.class.getResourceAsStream("/Resources/Images/logo.png")));
+        dialog.getDialogPane().getStylesheets().add("/Resources/css/styles.css");
+        dialog.setHeaderText("Currency Converter is unable to load the list of currencies.");
+        dialog.setTitle("Currency Converter");
+        boolean retrying = dialog.showAndWait().filter(retry::equals).isPresent();
+        if (retrying) {
+            ratesLabel.setText("Loading the currencies...");
+        }
+        return retrying;
+    }
+
+    /**
+     * @return Returns the button that opens the 'All currencies' window.
+     */
+    public Button getFanOutButton() {
+        return fanOutButton;
+    }
+
     /**
      * @return Returns the combo box used for selecting base currencies.
      */
@@ -213,86 +395,61 @@ public class UserInterface {
         fromTextField.setText("");
         toTextField.setText("");
         fromTextField.setVisible(true);
+        updateFanOut();
     }
 
     /**
-     * Transfers control to the first item starting with the entered key in the From combo box.
-     * It also sets the selected item to the currently accessed item in the combo box.
+     * Opens the 'All currencies' window, which converts the entered amount into every supported currency.
+     * Invoked by an Action event on the 'All currencies' button.
+     * @param event An event that detects the button press.
+     */
+    public void handleFanOutButton(Event event) {
+        fanOutWindow.show();
+        updateFanOut();
+    }
+
+    /**
+     * Jumps to the first currency whose name or code starts with the keys typed in the From combo box.
+     * The list of the combo box is filtered down to the matching currencies.
      * @param event An event that detects a key press action.
      * @throws IOException
      */
     public void handleKeyFromSelectPress(Event event) throws IOException {
-        KeyCode keyCode = ((KeyEvent)event).getCode();
-        if (keyCode.isLetterKey()) {
-            char key = keyCode.getName().charAt(0);
-            SingleSelectionModel<String> fromSelectModel = fromSelect.getSelectionModel();
-            fromSelectModel.select(0);
-            int options = fromSelect.getItems().size();
-            for (int i = 0; i < options; i++) {
-                if(fromSelectModel.getSelectedItem().charAt(0) == key) {
-                    fromSelectModel.select(i);
-                    ComboBoxListViewSkin<?> skin = (ComboBoxListViewSkin<?>) fromSelect.getSkin();
-                    ListView<?> list = (ListView<?>) skin.getPopupContent();
-                    list.scrollTo(i);
-                    currFromSelect = fromSelect.getValue().toString();
-                    return;
-                }
-                else
-                    fromSelectModel.selectNext();
-            }
-        }
+        handleKeySelectPress(fromSelect, fromTypeAhead, (KeyEvent) event);
     }
 
     /**
-     * Transfers control to the first item starting with the entered key in the To combo box.
-     * It also sets the selected item to the currently accessed item in the combo box.
+     * Jumps to the first currency whose name or code starts with the keys typed in the To combo box.
+     * The list of the combo box is filtered down to the matching currencies.
      * @param event An event that detects a key press action.
      * @throws IOException
      */
     public void handleKeyToSelectPress(Event event) throws IOException {
-        KeyCode keyCode = ((KeyEvent)event).getCode();
-        if (keyCode.isLetterKey()) {
-            char key = keyCode.getName().charAt(0);
-            SingleSelectionModel<String> toSelectModel = toSelect.getSelectionModel();
-            toSelectModel.select(0);
-            int options = toSelect.getItems().size();
-            for (int i = 0; i < options; i++) {
-                if(toSelectModel.getSelectedItem().charAt(0) == key) {
-                    toSelectModel.select(i);
-                    ComboBoxListViewSkin<?> skin = (ComboBoxListViewSkin<?>) toSelect.getSkin();
-                    ListView<?> list = (ListView<?>) skin.getPopupContent();
-                    list.scrollTo(i);
-                    currToSelect = toSelect.getValue().toString();
-                    return;
-                }
-                else
-                    toSelectModel.selectNext();
-            }
-        }
+        handleKeySelectPress(toSelect, toTypeAhead, (KeyEvent) event);
     }
 
     /**
-     * Dynamically invokes the conversion method on user input to update the target currency text field.
+     * Dynamically invokes the conversion service on user input to update the target currency text field.
      * Invoked when the user enters values in the text field.
+     * The conversion runs on a background thread and the result is rendered once it is available.
+     * The 'All currencies' window, if it is shown, is recomputed right away from the installed rate matrix.
      * @param observable Generates a change event.
      * @param oldValue The old value in the text field.
      * @param newValue The new value in the text field.
      */
     public void handleTextFieldChange(ObservableValue observable, String oldValue, String newValue) {
+        updateFanOut();
         String selectedFrom =(String)fromSelect.getValue();
         String selectedTo =(String)toSelect.getValue();
-        try {
-            if (selectedFrom != "Select" && selectedTo != "Select") {
-                toTextField.setVisible(true);
-                toTextField.setText("");
-                if (!(fromTextField.getText().equals(""))) {
-                    BigDecimal finalAmount = computeConversion();
-                    toTextField.setText(finalAmount + "");
-                }
+        if (selectedFrom != "Select" && selectedTo != "Select") {
+            toTextField.setVisible(true);
+            toTextField.setText("");
+            if (!(fromTextField.getText().equals(""))) {
+                conversionService.convert(selectedFrom, selectedTo, fromTextField.getText());
+            }
+            else {
+                conversionService.discard();
             }
-        }
-        catch(IOException e) {
-            e.printStackTrace();
         }
     }
 
@@ -312,13 +469,13 @@ public class UserInterface {
     }
 
     /**
-     * Restricts user input to only whole numbers in the amount textfield.
+     * Restricts user input in the amount textfield to amounts with the decimal and grouping separators of the locale.
+     * The new text is checked by the character scanner of AmountParser.
      * @param changeInput The state representing a change in the text field.
      * @return Returns the changed input if valid or a null if invalid text.
      */
     public TextFormatter.Change restrictInput(TextFormatter.Change changeInput) {
-        String input = changeInput.getText();
-        if (input.matches("[0-9]*")) {
+        if (changeInput.getText().isEmpty() || AMOUNT_PARSER.isValid(changeInput.getControlNewText())) {
             return changeInput;
         }
         return null;